@@ -0,0 +1,126 @@
+package com.harsh.chat.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.UrlResource;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving an attachment to a socket: the ResponseEntity&lt;Resource&gt; path (UrlResource stream
+ * copied through an 8KB heap buffer, as ResourceHttpMessageConverter does) against
+ * FileChannel.transferTo (sendfile) and a memory-mapped write.
+ * The sink is a loopback TCP connection drained by a background thread.
+ * Throughput in ops/s times fileSize gives bytes/s; run with -prof perfnorm (Linux) or
+ * -prof gc to compare CPU cycles and allocation per operation, i.e. per GB served.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AttachmentServingBenchmark {
+
+    @Param({"65536", "1048576", "16777216"})
+    private int fileSize;
+
+    private Path file;
+    private UrlResource resource;
+    private ServerSocketChannel server;
+    private SocketChannel client;
+    private OutputStream clientStream;
+    private Thread drainer;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        byte[] content = new byte[fileSize];
+        ThreadLocalRandom.current().nextBytes(content);
+        file = Files.createTempFile("attachment-bench", ".bin");
+        Files.write(file, content);
+        resource = new UrlResource(file.toUri());
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress("127.0.0.1", 0));
+        client = SocketChannel.open(server.getLocalAddress());
+        SocketChannel accepted = server.accept();
+        clientStream = Channels.newOutputStream(client);
+
+        drainer = new Thread(() -> {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(256 * 1024);
+            try {
+                while (accepted.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            } catch (IOException e) {
+                // Connection closed at teardown
+            }
+        }, "bench-drainer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, InterruptedException {
+        client.close();
+        server.close();
+        drainer.join(1000);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long resourceStreamCopy() throws IOException {
+        try (InputStream in = resource.getInputStream()) {
+            return StreamUtils.copy(in, clientStream);
+        }
+    }
+
+    @Benchmark
+    public long fileChannelTransferTo() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = channel.size();
+            while (position < size) {
+                position += channel.transferTo(position, size - position, client);
+            }
+            return position;
+        }
+    }
+
+    @Benchmark
+    public long memoryMappedWrite() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            long written = 0;
+            while (mapped.hasRemaining()) {
+                written += client.write(mapped);
+            }
+            return written;
+        }
+    }
+}
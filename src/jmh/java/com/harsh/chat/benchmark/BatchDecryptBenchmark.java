@@ -0,0 +1,142 @@
+package com.harsh.chat.benchmark;
+
+import com.harsh.chat.service.EncryptionService;
+import com.harsh.chat.service.RoomKeyStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency of decrypting one history page. "serial" is the per-message decryptMessage loop,
+ * "batch" is decryptBatch with the configured threshold, and "batchParallel" always uses
+ * the fork-join pool, which shows where the parallel path starts to pay off. Pages hold
+ * two key versions, as after a rotation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchDecryptBenchmark {
+
+    private static final String ROOM_ID = "benchmark-room";
+    private static final int MESSAGE_SIZE = 256;
+
+    // Default history page (20), a long scroll-back, a bulk export-sized page
+    @Param({"20", "50", "200"})
+    private int pageSize;
+
+    private EncryptionService encryptionService;
+    private EncryptionService alwaysParallel;
+    private List<String> page;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        SecretKey version1 = newKey();
+        SecretKey version2 = newKey();
+        RoomKeyStore roomKeyStore = new RoomKeyStore(null, null, null, null, null) {
+            private int current = 1;
+
+            @Override
+            public VersionedKey currentKey(String roomId) {
+                return current == 1 ? new VersionedKey(1, version1) : new VersionedKey(2, version2);
+            }
+
+            @Override
+            public SecretKey key(String roomId, int version) {
+                return version == 1 ? version1 : version2;
+            }
+
+            @Override
+            public int rotate(String roomId) {
+                return ++current;
+            }
+        };
+
+        encryptionService = newService(roomKeyStore, 64);
+        alwaysParallel = newService(roomKeyStore, 0);
+
+        page = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            if (i == pageSize / 2) {
+                encryptionService.regenerateRoomKey(ROOM_ID);
+            }
+            page.add(encryptionService.encryptMessage(randomText(), ROOM_ID));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        encryptionService.shutdown();
+        alwaysParallel.shutdown();
+    }
+
+    @Benchmark
+    public List<String> serial() {
+        List<String> plaintexts = new ArrayList<>(page.size());
+        for (String sealed : page) {
+            plaintexts.add(encryptionService.decryptMessage(sealed, ROOM_ID));
+        }
+        return plaintexts;
+    }
+
+    @Benchmark
+    public List<EncryptionService.DecryptResult> batch() {
+        return encryptionService.decryptBatch(page, ROOM_ID);
+    }
+
+    @Benchmark
+    public List<EncryptionService.DecryptResult> batchParallel() {
+        return alwaysParallel.decryptBatch(page, ROOM_ID);
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private EncryptionService newService(RoomKeyStore roomKeyStore, int parallelThreshold) throws Exception {
+        EncryptionService service = new EncryptionService(roomKeyStore);
+        setField(service, "encryptionEnabled", true);
+        setField(service, "parallelThreshold", parallelThreshold);
+        setField(service, "maxQueuedBatches", 32);
+        service.init();
+        return service;
+    }
+
+    private void setField(EncryptionService service, String name, Object value) throws Exception {
+        Field field = EncryptionService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    private SecretKey newKey() {
+        byte[] keyBytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(keyBytes);
+        return new SecretKeySpec(keyBytes, "AES");
+    }
+
+    private String randomText() {
+        char[] chars = new char[MESSAGE_SIZE];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + ThreadLocalRandom.current().nextInt(26));
+        }
+        return new String(chars);
+    }
+}
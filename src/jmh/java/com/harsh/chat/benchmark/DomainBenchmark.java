@@ -0,0 +1,103 @@
+package com.harsh.chat.benchmark;
+
+import com.harsh.chat.entity.Message;
+import com.harsh.chat.entity.Room;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity methods on the send and reaction paths. getUserReaction scans every emoji's user
+ * set, so it is measured for a user who reacted last (hit) and one who did not (miss, the
+ * full scan) as reactors grows. Room.addMessage is measured the way it runs in production,
+ * on a room just loaded with a full recent-message list; roomCopyRecentIds is that copy
+ * alone, to subtract.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DomainBenchmark {
+
+    private static final String[] EMOJIS = {"👍", "❤️", "😂", "😮", "😢", "🙏"};
+
+    @Param({"10", "200"})
+    private int reactors;
+
+    private Message message;
+    private String lastReactor;
+
+    private Room room;
+    private List<String> recentIds;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        message = Message.create("benchmark-room", "alice", "hello");
+        for (int i = 0; i < reactors; i++) {
+            lastReactor = "user" + i;
+            message.addReaction(lastReactor, EMOJIS[i % EMOJIS.length]);
+        }
+
+        recentIds = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            recentIds.add("6650c0ffee0000000000" + String.format("%04d", i));
+        }
+        room = Room.builder().roomId("benchmark-room").build();
+    }
+
+    // ============== REACTIONS ==============
+
+    /**
+     * A new reaction and its removal, so the message stays the same size
+     */
+    @Benchmark
+    public boolean addAndRemoveReaction() {
+        message.addReaction("newcomer", EMOJIS[0]);
+        return message.removeReaction("newcomer", EMOJIS[0]);
+    }
+
+    @Benchmark
+    public boolean addReactionDuplicate() {
+        return message.addReaction(lastReactor, EMOJIS[(reactors - 1) % EMOJIS.length]);
+    }
+
+    @Benchmark
+    public String getUserReactionHit() {
+        return message.getUserReaction(lastReactor);
+    }
+
+    @Benchmark
+    public String getUserReactionMiss() {
+        return message.getUserReaction("lurker");
+    }
+
+    // ============== ROOM ==============
+
+    @Benchmark
+    public Room roomAddMessage() {
+        room.setRecentMessageIds(new ArrayList<>(recentIds));
+        room.addMessage("6650c0ffee00000000009999");
+        return room;
+    }
+
+    @Benchmark
+    public List<String> roomCopyRecentIds() {
+        room.setRecentMessageIds(new ArrayList<>(recentIds));
+        return room.getRecentMessageIds();
+    }
+}
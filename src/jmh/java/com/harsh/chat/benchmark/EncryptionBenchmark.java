@@ -0,0 +1,179 @@
+package com.harsh.chat.benchmark;
+
+import com.harsh.chat.service.EncryptionService;
+import com.harsh.chat.service.RoomKeyStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Messages encrypted/decrypted per second on one thread, i.e. per core.
+ * "legacy" reproduces the previous per-call path (new SecureRandom, Cipher.getInstance,
+ * "iv:data" Base64 strings); the others go through EncryptionService's reused thread-local
+ * Cipher and shared SecureRandom, with the room key already in RoomKeyStore's cache.
+ * Run with -t N to check that throughput scales with threads (a shared RNG or Cipher pool
+ * would show up as contention there).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(1)
+@Fork(1)
+public class EncryptionBenchmark {
+
+    private static final String ROOM_ID = "benchmark-room";
+
+    // Typical chat line, a long paragraph, a large pasted block
+    @Param({"64", "512", "4096"})
+    private int messageSize;
+
+    private EncryptionService encryptionService;
+    private SecretKey legacyKey;
+
+    private String message;
+    private byte[] plaintext;
+    private ByteBuffer plaintextBuffer;
+    private ByteBuffer sealedBuffer;
+    private ByteBuffer openedBuffer;
+
+    private String sealedMessage;
+    private byte[] sealedBytes;
+    private String legacySealedMessage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        byte[] keyBytes = new byte[32];
+        ThreadLocalRandom.current().nextBytes(keyBytes);
+        legacyKey = new SecretKeySpec(keyBytes, "AES");
+
+        // Key store reduced to its cache hit: one room, one key version
+        RoomKeyStore.VersionedKey roomKey = new RoomKeyStore.VersionedKey(1, legacyKey);
+        RoomKeyStore roomKeyStore = new RoomKeyStore(null, null, null, null, null) {
+            @Override
+            public VersionedKey currentKey(String roomId) {
+                return roomKey;
+            }
+
+            @Override
+            public SecretKey key(String roomId, int version) {
+                return roomKey.key();
+            }
+        };
+
+        encryptionService = new EncryptionService(roomKeyStore);
+        Field enabled = EncryptionService.class.getDeclaredField("encryptionEnabled");
+        enabled.setAccessible(true);
+        enabled.set(encryptionService, true);
+
+        char[] chars = new char[messageSize];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('a' + ThreadLocalRandom.current().nextInt(26));
+        }
+        message = new String(chars);
+        plaintext = message.getBytes(StandardCharsets.UTF_8);
+
+        plaintextBuffer = ByteBuffer.allocateDirect(plaintext.length);
+        sealedBuffer = ByteBuffer.allocateDirect(EncryptionService.sealedLength(plaintext.length));
+        openedBuffer = ByteBuffer.allocateDirect(EncryptionService.sealedLength(plaintext.length));
+
+        sealedMessage = encryptionService.encryptMessage(message, ROOM_ID);
+        sealedBytes = encryptionService.encrypt(plaintext, ROOM_ID);
+        legacySealedMessage = legacyEncrypt(message);
+    }
+
+    // ============== ENCRYPT ==============
+
+    @Benchmark
+    public String encryptLegacy() throws Exception {
+        return legacyEncrypt(message);
+    }
+
+    @Benchmark
+    public String encryptString() {
+        return encryptionService.encryptMessage(message, ROOM_ID);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return encryptionService.encrypt(plaintext, ROOM_ID);
+    }
+
+    @Benchmark
+    public int encryptByteBuffer() {
+        plaintextBuffer.clear().put(plaintext).flip();
+        sealedBuffer.clear();
+        return encryptionService.encrypt(plaintextBuffer, sealedBuffer, ROOM_ID);
+    }
+
+    // ============== DECRYPT ==============
+
+    @Benchmark
+    public String decryptLegacy() throws Exception {
+        return legacyDecrypt(legacySealedMessage);
+    }
+
+    @Benchmark
+    public String decryptString() {
+        return encryptionService.decryptMessage(sealedMessage, ROOM_ID);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return encryptionService.decrypt(sealedBytes, ROOM_ID);
+    }
+
+    @Benchmark
+    public int decryptByteBuffer() {
+        sealedBuffer.clear().put(sealedBytes).flip();
+        openedBuffer.clear();
+        return encryptionService.decrypt(sealedBuffer, openedBuffer, ROOM_ID);
+    }
+
+    // ============== PREVIOUS IMPLEMENTATION ==============
+
+    private String legacyEncrypt(String text) throws Exception {
+        byte[] iv = new byte[12];
+        SecureRandom random = new SecureRandom();
+        random.nextBytes(iv);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        byte[] encryptedData = cipher.doFinal(text.getBytes("UTF-8"));
+
+        return Base64.getEncoder().encodeToString(iv) + ":" + Base64.getEncoder().encodeToString(encryptedData);
+    }
+
+    private String legacyDecrypt(String encrypted) throws Exception {
+        String[] parts = encrypted.split(":");
+        byte[] iv = Base64.getDecoder().decode(parts[0]);
+        byte[] encryptedData = Base64.getDecoder().decode(parts[1]);
+
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(encryptedData), "UTF-8");
+    }
+}
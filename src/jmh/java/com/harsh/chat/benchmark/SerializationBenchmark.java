@@ -0,0 +1,167 @@
+package com.harsh.chat.benchmark;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harsh.chat.config.RedisConfig;
+import com.harsh.chat.entity.Message;
+import com.harsh.chat.entity.MessageStatus;
+import com.harsh.chat.payload.MessageResponse;
+import com.harsh.chat.payload.ReactionDTO;
+import com.harsh.chat.payload.ReadReceiptDTO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of turning one message into what goes over the wire and into Redis:
+ * MessageResponse.from, the Jackson writes of the STOMP payloads (with a mapper configured
+ * like Boot's: JavaTimeModule, ISO dates, non-null inclusion) and the default-typing JSON
+ * serializer RedisConfig puts on the RedisTemplate. recipients sets how many users have
+ * read and reacted to the message, which is what makes payloads grow.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializationBenchmark {
+
+    private static final String[] EMOJIS = {"👍", "❤️", "😂", "😮", "😢", "🙏"};
+
+    // A small room and a busy one
+    @Param({"2", "50"})
+    private int recipients;
+
+    private ObjectMapper objectMapper;
+    private RedisSerializer<Object> redisSerializer;
+
+    private Message message;
+    private MessageResponse response;
+    private ReactionDTO reaction;
+    private ReadReceiptDTO receipt;
+    private byte[] redisMessage;
+
+    @Setup(Level.Trial)
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json()
+                .serializationInclusion(JsonInclude.Include.NON_NULL)
+                .timeZone(TimeZone.getTimeZone("UTC"))
+                .build();
+
+        // The template is only built for its serializer, nothing connects
+        redisSerializer = (RedisSerializer<Object>) new RedisConfig()
+                .redisTemplate(new LettuceConnectionFactory())
+                .getValueSerializer();
+
+        message = Message.create("benchmark-room", "alice",
+                "Are we still on for the release review at three? I pushed the last fixes this morning.");
+        message.setId("6650c0ffee00000000000001");
+        Set<String> users = new HashSet<>();
+        for (int i = 0; i < recipients; i++) {
+            String user = "user" + i;
+            users.add(user);
+            message.markAsDelivered(user);
+            message.markAsRead(user);
+            message.addReaction(user, EMOJIS[i % EMOJIS.length]);
+        }
+
+        response = MessageResponse.from(message, "user0");
+        reaction = ReactionDTO.builder()
+                .type("ADD")
+                .messageId(message.getId())
+                .roomId(message.getRoomId())
+                .username("user0")
+                .emoji(EMOJIS[0])
+                .timestamp(LocalDateTime.now())
+                .reactions(message.getReactions())
+                .reactionCounts(message.getReactionCounts())
+                .totalReactions(recipients)
+                .build();
+        receipt = ReadReceiptDTO.builder()
+                .type("READ")
+                .messageId(message.getId())
+                .roomId(message.getRoomId())
+                .username("user0")
+                .status(MessageStatus.READ)
+                .timestamp(LocalDateTime.now())
+                .readBy(users)
+                .deliveredTo(users)
+                .build();
+
+        redisMessage = redisSerializer.serialize(message);
+    }
+
+    // ============== PAYLOADS ==============
+
+    @Benchmark
+    public MessageResponse messageResponseFrom() {
+        return MessageResponse.from(message);
+    }
+
+    @Benchmark
+    public MessageResponse messageResponseFromForUser() {
+        return MessageResponse.from(message, "user0");
+    }
+
+    // ============== JACKSON ==============
+
+    @Benchmark
+    public byte[] jacksonMessageResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] jacksonReaction() throws Exception {
+        return objectMapper.writeValueAsBytes(reaction);
+    }
+
+    @Benchmark
+    public byte[] jacksonReadReceipt() throws Exception {
+        return objectMapper.writeValueAsBytes(receipt);
+    }
+
+    /**
+     * What one broadcast costs before the broker: build the response and write it
+     */
+    @Benchmark
+    public byte[] broadcastPayload() throws Exception {
+        return objectMapper.writeValueAsBytes(MessageResponse.from(message));
+    }
+
+    // ============== REDIS ==============
+
+    @Benchmark
+    public byte[] redisSerialize() {
+        return redisSerializer.serialize(message);
+    }
+
+    @Benchmark
+    public Object redisDeserialize() {
+        return redisSerializer.deserialize(redisMessage);
+    }
+
+    @Benchmark
+    public Object redisRoundTrip() {
+        return redisSerializer.deserialize(redisSerializer.serialize(message));
+    }
+}
@@ -0,0 +1,164 @@
+package com.harsh.chat.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for one run, written as JSON. Delivery latency runs from
+ * just before a SEND frame is written to its broadcast arriving at a subscriber, per
+ * subscriber, so it covers the whole server path including broker fan-out.
+ */
+public class LoadReport {
+
+    public static final String ERROR_CONNECT = "connect";
+    public static final String ERROR_STOMP = "stomp";
+    public static final String ERROR_TRANSPORT = "transport";
+    public static final String ERROR_APPLICATION = "application";
+    public static final String ERROR_SEND = "send";
+
+    private final Instant startedAt = Instant.now();
+
+    private final Map<LoadTestOptions.Action, LongAdder> operations = new EnumMap<>(LoadTestOptions.Action.class);
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder deliveries = new LongAdder();
+
+    private final Histogram connectMicros = new ConcurrentHistogram(3);
+    private final Histogram deliveryMicros = new ConcurrentHistogram(3);
+
+    private volatile long loadStartNanos;
+    private volatile long loadEndNanos;
+    private volatile int connectedSessions;
+
+    public LoadReport() {
+        for (LoadTestOptions.Action action : LoadTestOptions.Action.values()) {
+            operations.put(action, new LongAdder());
+        }
+    }
+
+    public void connected(long nanos) {
+        connectMicros.recordValue(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void connectedSessions(int count) {
+        connectedSessions = count;
+    }
+
+    public void operation(LoadTestOptions.Action action) {
+        operations.get(action).increment();
+    }
+
+    public void delivered(long nanos) {
+        deliveries.increment();
+        deliveryMicros.recordValue(Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos)));
+    }
+
+    public void error(String kind) {
+        errors.computeIfAbsent(kind, k -> new LongAdder()).increment();
+    }
+
+    public long errorCount(String kind) {
+        LongAdder count = errors.get(kind);
+        return count != null ? count.sum() : 0;
+    }
+
+    public void loadStarted() {
+        loadStartNanos = System.nanoTime();
+    }
+
+    public void loadFinished() {
+        loadEndNanos = System.nanoTime();
+    }
+
+    public Map<String, Object> toMap(LoadTestOptions options) {
+        double seconds = Math.max(1e-9, (loadEndNanos - loadStartNanos) / 1e9);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("startedAt", startedAt.toString());
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("sessions", options.sessions());
+        config.put("rooms", options.rooms());
+        config.put("targetRate", options.rate());
+        config.put("durationSeconds", options.duration().toSeconds());
+        config.put("messageSize", options.messageSize());
+        config.put("mix", options.mix());
+        config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+        report.put("config", config);
+
+        Map<String, Object> connect = new LinkedHashMap<>();
+        connect.put("connected", connectedSessions);
+        connect.put("failed", errorCount(ERROR_CONNECT));
+        connect.put("latencyMs", percentiles(connectMicros));
+        report.put("connect", connect);
+
+        long totalOperations = 0;
+        Map<String, Long> operationCounts = new LinkedHashMap<>();
+        for (Map.Entry<LoadTestOptions.Action, LongAdder> entry : operations.entrySet()) {
+            operationCounts.put(entry.getKey().name().toLowerCase(), entry.getValue().sum());
+            totalOperations += entry.getValue().sum();
+        }
+        report.put("operations", operationCounts);
+
+        Map<String, Object> throughput = new LinkedHashMap<>();
+        throughput.put("measuredSeconds", seconds);
+        throughput.put("operationsPerSecond", totalOperations / seconds);
+        throughput.put("messagesPerSecond", operations.get(LoadTestOptions.Action.SEND).sum() / seconds);
+        throughput.put("deliveriesPerSecond", deliveries.sum() / seconds);
+        report.put("throughput", throughput);
+
+        Map<String, Object> delivery = new LinkedHashMap<>();
+        delivery.put("count", deliveries.sum());
+        delivery.put("latencyMs", percentiles(deliveryMicros));
+        report.put("delivery", delivery);
+
+        long totalErrors = 0;
+        Map<String, Long> errorCounts = new LinkedHashMap<>();
+        for (Map.Entry<String, LongAdder> entry : errors.entrySet()) {
+            errorCounts.put(entry.getKey(), entry.getValue().sum());
+            totalErrors += entry.getValue().sum();
+        }
+        report.put("errors", errorCounts);
+        report.put("errorRate", totalErrors / (double) Math.max(1, totalOperations + options.sessions()));
+
+        return report;
+    }
+
+    public void write(Path path, LoadTestOptions options) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(path.toFile(), toMap(options));
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private static Map<String, Object> percentiles(Histogram micros) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", micros.getTotalCount());
+        if (micros.getTotalCount() == 0) {
+            return values;
+        }
+        values.put("mean", micros.getMean() / 1000.0);
+        values.put("p50", micros.getValueAtPercentile(50) / 1000.0);
+        values.put("p90", micros.getValueAtPercentile(90) / 1000.0);
+        values.put("p99", micros.getValueAtPercentile(99) / 1000.0);
+        values.put("p999", micros.getValueAtPercentile(99.9) / 1000.0);
+        values.put("max", micros.getMaxValue() / 1000.0);
+        return values;
+    }
+}
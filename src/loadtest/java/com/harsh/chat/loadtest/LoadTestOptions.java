@@ -0,0 +1,109 @@
+package com.harsh.chat.loadtest;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test settings from --name=value arguments. Arguments the harness does not know are
+ * passed to the application as properties, e.g. --spring.data.mongodb.uri=...
+ */
+public record LoadTestOptions(
+        int sessions,
+        int rooms,
+        int connectRate,
+        int rate,
+        int drivers,
+        Duration duration,
+        Duration drain,
+        int messageSize,
+        Map<Action, Integer> mix,
+        String report,
+        Map<String, String> applicationProperties
+) {
+
+    /**
+     * What one operation sends, with its default share of the mix
+     */
+    public enum Action {
+        SEND(70), TYPING(15), REACTION(10), RECEIPT(5);
+
+        private final int defaultWeight;
+
+        Action(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+    }
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            values.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        int sessions = intValue(values, "sessions", 1000);
+        int rooms = intValue(values, "rooms", Math.max(1, sessions / 50));
+        LoadTestOptions options = new LoadTestOptions(
+                sessions,
+                rooms,
+                intValue(values, "connect-rate", 200),
+                intValue(values, "rate", 500),
+                intValue(values, "drivers", 4),
+                Duration.ofSeconds(intValue(values, "duration", 60)),
+                Duration.ofSeconds(intValue(values, "drain", 5)),
+                intValue(values, "message-size", 120),
+                mix(values.remove("mix")),
+                valueOrDefault(values, "report", "target/loadtest-report.json"),
+                values);
+
+        if (sessions < 1 || rooms < 1 || rooms > sessions || options.rate() < 1 || options.drivers() < 1) {
+            throw new IllegalArgumentException("Need sessions >= rooms >= 1, rate >= 1 and drivers >= 1");
+        }
+        return options;
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * Weights as send:70,typing:15,reaction:10,receipt:5; actions left out get 0
+     */
+    private static Map<Action, Integer> mix(String spec) {
+        Map<Action, Integer> mix = new EnumMap<>(Action.class);
+        if (spec == null) {
+            for (Action action : Action.values()) {
+                mix.put(action, action.defaultWeight);
+            }
+            return mix;
+        }
+
+        for (Action action : Action.values()) {
+            mix.put(action, 0);
+        }
+        for (String part : spec.split(",")) {
+            String[] weight = part.trim().split(":");
+            if (weight.length != 2) {
+                throw new IllegalArgumentException("Bad mix entry: " + part);
+            }
+            mix.put(Action.valueOf(weight[0].trim().toUpperCase()), Integer.parseInt(weight[1].trim()));
+        }
+        if (mix.values().stream().mapToInt(Integer::intValue).sum() <= 0) {
+            throw new IllegalArgumentException("Mix weights must add up to more than 0");
+        }
+        return mix;
+    }
+
+    private static int intValue(Map<String, String> values, String name, int defaultValue) {
+        String value = values.remove(name);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private static String valueOrDefault(Map<String, String> values, String name, String defaultValue) {
+        String value = values.remove(name);
+        return value != null ? value : defaultValue;
+    }
+}
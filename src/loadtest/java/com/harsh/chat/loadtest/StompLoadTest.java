@@ -0,0 +1,346 @@
+package com.harsh.chat.loadtest;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.harsh.chat.ChatAppBackendApplication;
+import com.harsh.chat.entity.User;
+import com.harsh.chat.service.ChatService;
+import com.harsh.chat.service.JwtService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
+import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
+import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.WebSocketHttpHeaders;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.messaging.WebSocketStompClient;
+
+import java.lang.reflect.Type;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * End-to-end STOMP load test. Starts the application in this JVM on a random port, creates
+ * rooms, opens sessions against /chat (plain WebSocket) with JWTs minted by JwtService,
+ * drives a weighted mix of sendMessage, typing, reaction and read receipt frames at a fixed
+ * aggregate rate, and writes throughput, delivery latency percentiles and error counts as
+ * JSON.
+ * Nothing leaves the machine: Mongo and Redis are the local instances the application is
+ * configured with (a chatdb-loadtest database by default), and client and server share the
+ * loopback interface. Rate limits are lifted so the server is measured, not the limiter.
+ * Each session takes two file descriptors in this process, so raise ulimit -n to a bit
+ * over twice the session count.
+ *
+ * mvn -Ploadtest compile exec:exec -Dloadtest.args="--sessions=2000 --rate=1000 --duration=120"
+ */
+public class StompLoadTest {
+
+    private static final String MARKER = "lt:";
+    private static final String[] EMOJIS = {"👍", "❤️", "😂", "😮"};
+    private static final long TICK_MILLIS = 10;
+
+    private final LoadTestOptions options;
+    private final LoadReport report = new LoadReport();
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+
+    private final List<LoadSession> sessions = new CopyOnWriteArrayList<>();
+    private final AtomicReferenceArray<String> lastMessageIds;
+    private final List<LoadTestOptions.Action> weightedActions = new ArrayList<>();
+
+    public StompLoadTest(LoadTestOptions options) {
+        this.options = options;
+        this.lastMessageIds = new AtomicReferenceArray<>(options.rooms());
+        options.mix().forEach((action, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weightedActions.add(action);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        StompLoadTest loadTest = new StompLoadTest(options);
+
+        try (ConfigurableApplicationContext application = startApplication(options)) {
+            loadTest.run(application);
+        }
+
+        Path reportPath = Path.of(options.report());
+        loadTest.report.write(reportPath, options);
+        System.out.println("Load test report written to " + reportPath.toAbsolutePath());
+        System.exit(0);
+    }
+
+    /**
+     * Connect, drive the mix for the configured duration, let deliveries drain, disconnect
+     */
+    public void run(ConfigurableApplicationContext application) throws Exception {
+        int port = application.getEnvironment().getRequiredProperty("local.server.port", Integer.class);
+        JwtService jwtService = application.getBean(JwtService.class);
+        ChatService chatService = application.getBean(ChatService.class);
+
+        for (int room = 0; room < options.rooms(); room++) {
+            chatService.createRoom(roomId(room));
+        }
+
+        ThreadPoolTaskScheduler heartbeats = new ThreadPoolTaskScheduler();
+        heartbeats.setPoolSize(2);
+        heartbeats.setThreadNamePrefix("loadtest-heartbeat-");
+        heartbeats.initialize();
+
+        WebSocketStompClient client = new WebSocketStompClient(new StandardWebSocketClient());
+        client.setMessageConverter(messageConverter());
+        client.setTaskScheduler(heartbeats);
+        client.setDefaultHeartbeat(new long[]{10000, 10000});
+
+        try {
+            connectAll(client, jwtService, "ws://localhost:" + port + "/chat");
+            drive();
+        } finally {
+            for (LoadSession session : sessions) {
+                session.disconnect();
+            }
+            heartbeats.shutdown();
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private static ConfigurableApplicationContext startApplication(LoadTestOptions options) {
+        Map<String, String> properties = new LinkedHashMap<>();
+        properties.put("server.port", "0");
+        properties.put("spring.main.banner-mode", "off");
+        properties.put("spring.data.mongodb.uri", "mongodb://localhost:27017/chatdb-loadtest");
+        properties.put("logging.level.com.harsh.chat", "WARN");
+        for (String policy : List.of("chat-message", "typing", "reactions", "receipts")) {
+            properties.put("rate-limit.policies." + policy + ".max-attempts", String.valueOf(Integer.MAX_VALUE));
+        }
+        properties.putAll(options.applicationProperties());
+
+        // As command line arguments, so they take precedence over application.yml
+        String[] args = properties.entrySet().stream()
+                .map(entry -> "--" + entry.getKey() + "=" + entry.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(ChatAppBackendApplication.class).run(args);
+    }
+
+    private void connectAll(WebSocketStompClient client, JwtService jwtService, String url) throws Exception {
+        List<CompletableFuture<StompSession>> pending = new ArrayList<>();
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, options.connectRate());
+        long next = System.nanoTime();
+
+        for (int i = 0; i < options.sessions(); i++) {
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            }
+            next += intervalNanos;
+
+            String username = "load-" + runId + "-user" + i;
+            String token = jwtService.generateToken(User.builder()
+                    .username(username)
+                    .roles(Set.of("ROLE_USER"))
+                    .build());
+            StompHeaders connectHeaders = new StompHeaders();
+            connectHeaders.add("Authorization", "Bearer " + token);
+
+            LoadSession session = new LoadSession(i % options.rooms(), System.nanoTime());
+            pending.add(client.connectAsync(url, new WebSocketHttpHeaders(), connectHeaders, session)
+                    .whenComplete((stompSession, failure) -> {
+                        if (failure != null) {
+                            report.error(LoadReport.ERROR_CONNECT);
+                        }
+                    }));
+        }
+
+        for (CompletableFuture<StompSession> future : pending) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                // Counted when the future completed; a timeout leaves the session out
+            }
+        }
+        report.connectedSessions(sessions.size());
+        System.out.printf("Connected %d of %d sessions in %d rooms%n", sessions.size(), options.sessions(), options.rooms());
+
+        if (sessions.isEmpty()) {
+            throw new IllegalStateException("No session connected; is the application reachable?");
+        }
+    }
+
+    /**
+     * Spread the target rate over driver threads ticking every 10 ms
+     */
+    private void drive() throws InterruptedException {
+        ScheduledExecutorService drivers = Executors.newScheduledThreadPool(options.drivers());
+        double perTick = options.rate() * (TICK_MILLIS / 1000.0) / options.drivers();
+
+        report.loadStarted();
+        for (int d = 0; d < options.drivers(); d++) {
+            double[] owed = {0};
+            drivers.scheduleAtFixedRate(() -> {
+                owed[0] += perTick;
+                while (owed[0] >= 1) {
+                    owed[0]--;
+                    operate();
+                }
+            }, 0, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        TimeUnit.MILLISECONDS.sleep(options.duration().toMillis());
+        drivers.shutdownNow();
+        drivers.awaitTermination(5, TimeUnit.SECONDS);
+        report.loadFinished();
+
+        // Sends still in flight land in the histogram but not in the throughput window
+        TimeUnit.MILLISECONDS.sleep(options.drain().toMillis());
+    }
+
+    private void operate() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        LoadSession session = sessions.get(random.nextInt(sessions.size()));
+        LoadTestOptions.Action action = weightedActions.get(random.nextInt(weightedActions.size()));
+        String messageId = lastMessageIds.get(session.room);
+
+        // Reactions and receipts need a message; until the room has one, send instead
+        if (messageId == null && action != LoadTestOptions.Action.TYPING) {
+            action = LoadTestOptions.Action.SEND;
+        }
+
+        String roomId = roomId(session.room);
+        try {
+            switch (action) {
+                case SEND -> session.send("/app/sendMessage/" + roomId, Map.of(
+                        "roomId", roomId,
+                        "sender", "ignored",
+                        "content", content()));
+                case TYPING -> session.send("/app/typing/start/" + roomId, Map.of());
+                case REACTION -> session.send("/app/reaction/add/" + roomId, Map.of(
+                        "messageId", messageId,
+                        "emoji", EMOJIS[random.nextInt(EMOJIS.length)]));
+                case RECEIPT -> session.send("/app/read/" + roomId, Map.of("messageId", messageId));
+            }
+            report.operation(action);
+        } catch (RuntimeException e) {
+            report.error(LoadReport.ERROR_SEND);
+        }
+    }
+
+    /**
+     * Marker, run id and send time, padded to the configured size
+     */
+    private String content() {
+        StringBuilder content = new StringBuilder(MARKER).append(runId).append(':').append(System.nanoTime()).append(' ');
+        while (content.length() < options.messageSize()) {
+            content.append('x');
+        }
+        return content.toString();
+    }
+
+    private void received(int room, JsonNode message) {
+        JsonNode id = message.get("id");
+        if (id != null && !id.isNull()) {
+            lastMessageIds.set(room, id.asText());
+        }
+
+        String content = message.path("content").asText("");
+        String prefix = MARKER + runId + ":";
+        if (!content.startsWith(prefix)) {
+            return;
+        }
+        int end = content.indexOf(' ', prefix.length());
+        long sentAt = Long.parseLong(content.substring(prefix.length(), end != -1 ? end : content.length()));
+        report.delivered(System.nanoTime() - sentAt);
+    }
+
+    private String roomId(int room) {
+        return "load-" + runId + "-room" + room;
+    }
+
+    private MappingJackson2MessageConverter messageConverter() {
+        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(new ObjectMapper()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+        return converter;
+    }
+
+    /**
+     * One client session: subscribes to its room and its error queue once connected
+     */
+    private class LoadSession extends StompSessionHandlerAdapter {
+
+        private final int room;
+        private final long connectStartedAt;
+        private volatile StompSession session;
+
+        LoadSession(int room, long connectStartedAt) {
+            this.room = room;
+            this.connectStartedAt = connectStartedAt;
+        }
+
+        @Override
+        public void afterConnected(StompSession session, StompHeaders connectedHeaders) {
+            report.connected(System.nanoTime() - connectStartedAt);
+            this.session = session;
+
+            session.subscribe("/topic/room/" + roomId(room), new JsonFrameHandler(message -> received(room, message)));
+            session.subscribe("/user/queue/errors", new JsonFrameHandler(message -> report.error(LoadReport.ERROR_APPLICATION)));
+            sessions.add(this);
+        }
+
+        @Override
+        public void handleException(StompSession session, StompCommand command, StompHeaders headers,
+                                    byte[] payload, Throwable exception) {
+            report.error(LoadReport.ERROR_STOMP);
+        }
+
+        @Override
+        public void handleTransportError(StompSession session, Throwable exception) {
+            // Failed connects are counted when their future completes
+            if (this.session != null) {
+                report.error(LoadReport.ERROR_TRANSPORT);
+            }
+        }
+
+        void send(String destination, Object payload) {
+            session.send(destination, payload);
+        }
+
+        void disconnect() {
+            StompSession current = session;
+            if (current != null && current.isConnected()) {
+                current.disconnect();
+            }
+        }
+    }
+
+    private record JsonFrameHandler(Consumer<JsonNode> consumer) implements StompFrameHandler {
+
+        @Override
+        public Type getPayloadType(StompHeaders headers) {
+            return JsonNode.class;
+        }
+
+        @Override
+        public void handleFrame(StompHeaders headers, Object payload) {
+            consumer.accept((JsonNode) payload);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.harsh.chat.actuator;
+
+import com.harsh.chat.service.WebSocketMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * /actuator/websocket: this node's sessions, slow consumers, limit closes, heartbeat misses,
+ * subscription fan-out, channel queues and message counts per destination prefix
+ */
+@Component
+@Endpoint(id = "websocket")
+@RequiredArgsConstructor
+public class WebSocketEndpoint {
+
+    private final WebSocketMetrics webSocketMetrics;
+
+    @ReadOperation
+    public Map<String, Object> websocket() {
+        return webSocketMetrics.snapshot();
+    }
+}
@@ -5,10 +5,35 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Rate limit a REST or STOMP handler.
+ * REST handlers are checked by RateLimitAspect; @MessageMapping handlers are checked
+ * on the client inbound channel, so rejected frames never reach the handler.
+ */
 @Target(ElementType.METHOD)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface RateLimit {
+
+    /**
+     * Named policy under rate-limit.policies; when set it overrides maxAttempts and timeWindow
+     * and names the bucket, so handlers sharing a policy and key share a budget
+     */
+    String policy() default "";
+
     int maxAttempts() default 10;
     int timeWindow() default 60;
+
+    /**
+     * SpEL expression for the bucket key, evaluated over the method arguments by name
+     * plus #principal and #ip, e.g. "#principal.name + ':' + #roomId".
+     * Empty means the subject chosen by scope.
+     */
     String key() default "";
+
+    Scope scope() default Scope.USER;
+
+    enum Scope {
+        USER,   // Authenticated user, falls back to client IP for anonymous requests
+        IP      // Client IP, for unauthenticated endpoints such as login
+    }
 }
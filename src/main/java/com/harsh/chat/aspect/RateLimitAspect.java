@@ -1,14 +1,29 @@
 package com.harsh.chat.aspect;
 
 import com.harsh.chat.annotation.RateLimit;
-import com.harsh.chat.service.RedisService;
+import com.harsh.chat.config.ClientAddressResolver;
+import com.harsh.chat.exception.RateLimitExceededException;
+import com.harsh.chat.service.RateLimitPolicyService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.lang.reflect.Method;
 
 @Aspect
 @Component
@@ -16,23 +31,51 @@ import org.springframework.stereotype.Component;
 @Slf4j
 public class RateLimitAspect {
 
-    private final RedisService redisService;
+    private final RateLimitPolicyService rateLimitPolicyService;
+    private final ClientAddressResolver clientAddressResolver;
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
 
     @Around("@annotation(rateLimit)")
     public Object rateLimit(ProceedingJoinPoint joinPoint, RateLimit rateLimit) throws Throwable {
-        String username = SecurityContextHolder.getContext().getAuthentication().getName();
-        String methodName = joinPoint.getSignature().getName();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+
+        // STOMP handlers are limited on the inbound channel before dispatch
+        if (AnnotatedElementUtils.hasAnnotation(method, MessageMapping.class)) {
+            return joinPoint.proceed();
+        }
+
+        String ip = clientIp();
+        String subject = rateLimit.scope() == RateLimit.Scope.IP ? "ip:" + ip : currentSubject(ip);
 
-        String key = rateLimit.key().isEmpty()
-                ? username + ":" + methodName
-                : rateLimit.key() + ":" + username;
+        MethodBasedEvaluationContext context = new MethodBasedEvaluationContext(
+                null, method, joinPoint.getArgs(), parameterNameDiscoverer);
+        context.setVariable("principal", SecurityContextHolder.getContext().getAuthentication());
+        context.setVariable("ip", ip);
 
-        boolean allowed = redisService.checkRateLimit(key, rateLimit.maxAttempts(), rateLimit.timeWindow());
+        boolean allowed = rateLimitPolicyService.tryAcquire(rateLimit, method.getName(), context, subject);
 
         if (!allowed) {
-            throw new RuntimeException("Rate limit exceeded. Please try again later.");
+            throw new RateLimitExceededException("Rate limit exceeded. Please try again later.");
         }
 
         return joinPoint.proceed();
     }
-}
\ No newline at end of file
+
+    private String currentSubject(String ip) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return "ip:" + ip;
+        }
+        return authentication.getName();
+    }
+
+    private String clientIp() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return "unknown";
+        }
+
+        return clientAddressResolver.resolve(servletAttributes.getRequest());
+    }
+}
@@ -0,0 +1,136 @@
+package com.harsh.chat.config;
+
+import com.harsh.chat.exception.AuthenticationBusyException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * BCrypt encoder that runs hashing on a small dedicated pool.
+ * At most pool-size hashes burn CPU at once and at most queue-capacity callers wait;
+ * anything beyond that is rejected immediately with a 503 so a login storm cannot
+ * pin every request thread.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final MeterRegistry meterRegistry;
+    private final BCryptPasswordEncoder delegate = new BCryptPasswordEncoder();
+
+    @Value("${auth.hashing.pool-size:0}")
+    private int poolSize;
+
+    @Value("${auth.hashing.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Value("${auth.hashing.timeout-ms:5000}")
+    private long timeoutMs;
+
+    private ThreadPoolExecutor executor;
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejectedCounter;
+
+    @PostConstruct
+    public void init() {
+        int threads = poolSize > 0 ? poolSize : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        executor = new ThreadPoolExecutor(
+                threads, threads,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("password-hash-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        encodeTimer = Timer.builder("auth.password.hash")
+                .description("BCrypt hashing time")
+                .tag("operation", "encode")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        matchesTimer = Timer.builder("auth.password.hash")
+                .description("BCrypt hashing time")
+                .tag("operation", "matches")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        rejectedCounter = Counter.builder("auth.password.rejected")
+                .description("Hash requests rejected because the pool was saturated")
+                .register(meterRegistry);
+
+        Gauge.builder("auth.password.queue.depth", executor, e -> e.getQueue().size())
+                .description("Hash requests waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Hash requests currently running")
+                .register(meterRegistry);
+
+        log.info("Password hashing pool initialized: {} threads, queue capacity {}", threads, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return submit(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> T submit(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            log.warn("Password hashing pool saturated, rejecting request");
+            throw new AuthenticationBusyException("Authentication service is busy. Please try again shortly.");
+        }
+
+        try {
+            return future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            rejectedCounter.increment();
+            throw new AuthenticationBusyException("Authentication timed out. Please try again shortly.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AuthenticationBusyException("Authentication interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+}
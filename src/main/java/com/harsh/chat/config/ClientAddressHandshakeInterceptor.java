@@ -0,0 +1,39 @@
+package com.harsh.chat.config;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+
+import java.net.InetSocketAddress;
+import java.util.Map;
+
+/**
+ * Records the client IP in the WebSocket session attributes at handshake time,
+ * so per-IP rate limits can be applied to STOMP frames.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientAddressHandshakeInterceptor implements HandshakeInterceptor {
+
+    public static final String CLIENT_IP_ATTRIBUTE = "clientIp";
+
+    private final ClientAddressResolver clientAddressResolver;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                                   WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        InetSocketAddress remoteAddress = request.getRemoteAddress();
+        attributes.put(CLIENT_IP_ATTRIBUTE, clientAddressResolver.resolve(
+                request.getHeaders().get("X-Forwarded-For"),
+                remoteAddress != null ? remoteAddress.getHostString() : null));
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+                               WebSocketHandler wsHandler, Exception exception) {
+    }
+}
@@ -0,0 +1,50 @@
+package com.harsh.chat.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Client IP for per-IP rate limits.
+ * X-Forwarded-For is only trusted as far as our own proxies wrote it: each trusted proxy
+ * appends the address it received the request from, so the client is the entry
+ * trusted-proxy-hops from the right. Anything left of it was sent by the client and can
+ * be anything. With no trusted proxies the header is ignored and the socket address is used.
+ */
+@Component
+public class ClientAddressResolver {
+
+    private static final String FORWARDED_FOR = "X-Forwarded-For";
+
+    @Value("${client-address.trusted-proxy-hops:0}")
+    private int trustedProxyHops;
+
+    public String resolve(HttpServletRequest request) {
+        return resolve(Collections.list(request.getHeaders(FORWARDED_FOR)), request.getRemoteAddr());
+    }
+
+    /**
+     * @param forwardedFor every X-Forwarded-For header value, in order
+     * @param remoteAddress the socket peer, i.e. the last proxy or the client itself
+     */
+    public String resolve(List<String> forwardedFor, String remoteAddress) {
+        if (trustedProxyHops > 0 && forwardedFor != null) {
+            List<String> hops = new ArrayList<>();
+            for (String header : forwardedFor) {
+                for (String hop : header.split(",")) {
+                    if (!hop.isBlank()) {
+                        hops.add(hop.trim());
+                    }
+                }
+            }
+            if (hops.size() >= trustedProxyHops) {
+                return hops.get(hops.size() - trustedProxyHops);
+            }
+        }
+        return remoteAddress != null ? remoteAddress : "unknown";
+    }
+}
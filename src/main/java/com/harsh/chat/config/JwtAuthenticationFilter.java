@@ -1,7 +1,8 @@
 package com.harsh.chat.config;
 
 import com.harsh.chat.service.JwtService;
-import com.harsh.chat.service.CustomUserDetailsService;
+import com.harsh.chat.service.TokenAuthenticationService;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -25,7 +26,7 @@ import java.util.List;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
-    private final CustomUserDetailsService userDetailsService;
+    private final TokenAuthenticationService tokenAuthenticationService;
 
     private final List<String> publicEndpoints = Arrays.asList(
             "/api/v1/auth/login",
@@ -76,13 +77,14 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         final String jwt = authHeader.substring(7);
 
         try {
-            final String username = jwtService.extractUsername(jwt);
+            final Claims claims = jwtService.verifyToken(jwt);
+            final String username = claims.getSubject();
             log.debug("Extracted username from token: {}", username);
 
             if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-                UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+                UserDetails userDetails = tokenAuthenticationService.loadUser(claims);
 
-                if (jwtService.validateToken(jwt, userDetails)) {
+                if (userDetails != null && jwtService.validateClaims(claims, userDetails)) {
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                             userDetails,
                             null,
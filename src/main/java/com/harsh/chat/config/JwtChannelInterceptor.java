@@ -1,6 +1,8 @@
 package com.harsh.chat.config;
 
 import com.harsh.chat.service.JwtService;
+import com.harsh.chat.service.TokenAuthenticationService;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.Message;
@@ -11,7 +13,6 @@ import org.springframework.messaging.support.ChannelInterceptor;
 import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
@@ -22,7 +23,7 @@ import java.util.List;
 public class JwtChannelInterceptor implements ChannelInterceptor {
 
     private final JwtService jwtService;
-    private final UserDetailsService userDetailsService;
+    private final TokenAuthenticationService tokenAuthenticationService;
 
     @Override
     public Message<?> preSend(Message<?> message, MessageChannel channel) {
@@ -38,12 +39,13 @@ public class JwtChannelInterceptor implements ChannelInterceptor {
                     String token = authHeader.substring(7);
 
                     try {
-                        String username = jwtService.extractUsername(token);
+                        Claims claims = jwtService.verifyToken(token);
+                        String username = claims.getSubject();
 
                         if (username != null) {
-                            UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                            UserDetails userDetails = tokenAuthenticationService.loadUser(claims);
 
-                            if (jwtService.validateToken(token, userDetails)) {
+                            if (userDetails != null && jwtService.validateClaims(claims, userDetails)) {
                                 UsernamePasswordAuthenticationToken authentication =
                                         new UsernamePasswordAuthenticationToken(
                                                 userDetails, null, userDetails.getAuthorities());
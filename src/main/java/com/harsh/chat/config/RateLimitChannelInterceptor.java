@@ -0,0 +1,239 @@
+package com.harsh.chat.config;
+
+import com.harsh.chat.annotation.RateLimit;
+import com.harsh.chat.service.ChatMetrics;
+import com.harsh.chat.service.RateLimitPolicyService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.handler.HandlerMethod;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.PathMatcher;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Enforces @RateLimit on @MessageMapping handlers before dispatch.
+ * Rejected SEND frames are dropped here, so they never deserialize into handler
+ * arguments or reach Mongo; the sender gets an error on /user/queue/errors.
+ * Payload arguments are only converted when the key expression references them.
+ * Each check is timed as the rate_limit stage of chat.send.stage.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitChannelInterceptor implements ChannelInterceptor {
+
+    private final RateLimitPolicyService rateLimitPolicyService;
+    private final ChatMetrics chatMetrics;
+
+    private final ParameterNameDiscoverer parameterNameDiscoverer = new DefaultParameterNameDiscoverer();
+
+    private volatile List<Route> routes = List.of();
+    private Collection<String> destinationPrefixes = List.of();
+    private PathMatcher pathMatcher;
+    private MessageConverter messageConverter;
+    private SimpMessagingTemplate messagingTemplate;
+
+    /**
+     * Build the route table once the message handler has detected its mappings.
+     * The handler depends on the inbound channel, so it cannot be injected here.
+     */
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        SimpAnnotationMethodMessageHandler handler = event.getApplicationContext()
+                .getBeanProvider(SimpAnnotationMethodMessageHandler.class).getIfAvailable();
+        if (handler == null) {
+            return;
+        }
+
+        List<Route> detected = new ArrayList<>();
+        handler.getHandlerMethods().forEach((mapping, handlerMethod) -> {
+            RateLimit rateLimit = AnnotatedElementUtils.findMergedAnnotation(handlerMethod.getMethod(), RateLimit.class);
+            if (rateLimit != null) {
+                for (String pattern : mapping.getDestinationConditions().getPatterns()) {
+                    detected.add(new Route(pattern, handlerMethod, rateLimit));
+                }
+            }
+        });
+
+        this.destinationPrefixes = handler.getDestinationPrefixes();
+        this.pathMatcher = handler.getPathMatcher();
+        this.messageConverter = handler.getMessageConverter();
+        this.messagingTemplate = event.getApplicationContext().getBean(SimpMessagingTemplate.class);
+        this.routes = List.copyOf(detected);
+
+        log.info("Rate limits enforced on {} STOMP destinations", detected.size());
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        List<Route> currentRoutes = routes;
+        if (currentRoutes.isEmpty()) {
+            return message;
+        }
+
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || !StompCommand.SEND.equals(accessor.getCommand())) {
+            return message;
+        }
+
+        String lookupDestination = lookupDestination(accessor.getDestination());
+        if (lookupDestination == null) {
+            return message;
+        }
+
+        for (Route route : currentRoutes) {
+            if (pathMatcher.match(route.pattern(), lookupDestination)) {
+                Map<String, String> variables = pathMatcher.extractUriTemplateVariables(route.pattern(), lookupDestination);
+                if (!tryAcquire(route, message, accessor, variables)) {
+                    reject(accessor);
+                    return null;
+                }
+                break;
+            }
+        }
+
+        return message;
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private boolean tryAcquire(Route route, Message<?> message, StompHeaderAccessor accessor,
+                               Map<String, String> destinationVariables) {
+        Principal principal = accessor.getUser();
+        String ip = clientIp(accessor);
+
+        String subject = route.rateLimit().scope() == RateLimit.Scope.IP || principal == null
+                ? "ip:" + ip
+                : principal.getName();
+
+        HandlerArgumentContext context = new HandlerArgumentContext(route.handlerMethod(), message, destinationVariables);
+        context.setVariable("principal", principal);
+        context.setVariable("ip", ip);
+        context.setVariable("sessionId", accessor.getSessionId());
+
+        long start = System.nanoTime();
+        String outcome = ChatMetrics.OUTCOME_ERROR;
+        try {
+            boolean allowed = rateLimitPolicyService.tryAcquire(
+                    route.rateLimit(), route.handlerMethod().getMethod().getName(), context, subject);
+            outcome = allowed ? ChatMetrics.OUTCOME_SUCCESS : ChatMetrics.OUTCOME_REJECTED;
+            return allowed;
+        } finally {
+            chatMetrics.recordStage("rate_limit", outcome, System.nanoTime() - start);
+        }
+    }
+
+    private void reject(StompHeaderAccessor accessor) {
+        Principal principal = accessor.getUser();
+        log.warn("Dropped STOMP frame to {} from {}: rate limit exceeded",
+                accessor.getDestination(), principal != null ? principal.getName() : accessor.getSessionId());
+
+        if (principal != null) {
+            try {
+                messagingTemplate.convertAndSendToUser(principal.getName(), "/queue/errors",
+                        "Error: Rate limit exceeded. Please slow down.");
+            } catch (Exception e) {
+                log.debug("Failed to notify {} about rate limit: {}", principal.getName(), e.getMessage());
+            }
+        }
+    }
+
+    private String lookupDestination(String destination) {
+        if (destination == null) {
+            return null;
+        }
+        for (String prefix : destinationPrefixes) {
+            if (destination.startsWith(prefix)) {
+                return destination.substring(prefix.length() - 1);
+            }
+        }
+        return null;
+    }
+
+    private String clientIp(StompHeaderAccessor accessor) {
+        Map<String, Object> attributes = accessor.getSessionAttributes();
+        Object ip = attributes != null ? attributes.get(ClientAddressHandshakeInterceptor.CLIENT_IP_ATTRIBUTE) : null;
+        return ip != null ? ip.toString() : "unknown";
+    }
+
+    private record Route(String pattern, HandlerMethod handlerMethod, RateLimit rateLimit) {
+    }
+
+    /**
+     * Exposes handler arguments to the key expression by parameter name.
+     * Destination variables and the principal are bound up front; the payload
+     * is converted to the parameter type only on first reference.
+     */
+    private class HandlerArgumentContext extends StandardEvaluationContext {
+
+        private final HandlerMethod handlerMethod;
+        private final Message<?> message;
+        private final Map<String, String> destinationVariables;
+        private boolean payloadResolved;
+
+        HandlerArgumentContext(HandlerMethod handlerMethod, Message<?> message, Map<String, String> destinationVariables) {
+            this.handlerMethod = handlerMethod;
+            this.message = message;
+            this.destinationVariables = destinationVariables;
+            destinationVariables.forEach(this::setVariable);
+        }
+
+        @Override
+        public Object lookupVariable(String name) {
+            Object value = super.lookupVariable(name);
+            if (value != null || payloadResolved) {
+                return value;
+            }
+            payloadResolved = true;
+            resolveArguments();
+            return super.lookupVariable(name);
+        }
+
+        private void resolveArguments() {
+            for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+                parameter.initParameterNameDiscovery(parameterNameDiscoverer);
+                String name = parameter.getParameterName();
+                if (name == null || super.lookupVariable(name) != null) {
+                    continue;
+                }
+
+                Class<?> type = parameter.getParameterType();
+                if (Principal.class.isAssignableFrom(type)) {
+                    setVariable(name, super.lookupVariable("principal"));
+                } else if (parameter.hasParameterAnnotation(DestinationVariable.class)) {
+                    String variable = parameter.getParameterAnnotation(DestinationVariable.class).value();
+                    setVariable(name, destinationVariables.get(variable.isEmpty() ? name : variable));
+                } else if (parameter.hasParameterAnnotation(Header.class)) {
+                    Header header = parameter.getParameterAnnotation(Header.class);
+                    String headerName = !header.name().isEmpty() ? header.name() : header.value();
+                    setVariable(name, message.getHeaders().get(headerName.isEmpty() ? name : headerName));
+                } else {
+                    setVariable(name, messageConverter.fromMessage(message, type));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.harsh.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Named rate-limit policies referenced by @RateLimit(policy = "...")
+ */
+@Component
+@ConfigurationProperties(prefix = "rate-limit")
+@Data
+public class RateLimitProperties {
+
+    private Map<String, Policy> policies = new HashMap<>();
+
+    @Data
+    public static class Policy {
+        private int maxAttempts = 10;
+        private int timeWindow = 60;
+    }
+}
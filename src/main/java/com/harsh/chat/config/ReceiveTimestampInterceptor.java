@@ -0,0 +1,30 @@
+package com.harsh.chat.config;
+
+import com.harsh.chat.service.ChatMetrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stamps SEND frames with their arrival time. preSend runs on the transport thread, before
+ * the frame queues for an inbound worker, so the receive-to-broadcast latency recorded by
+ * ChatMetrics includes that wait. Registered first on the inbound channel.
+ */
+@Component
+public class ReceiveTimestampInterceptor implements ChannelInterceptor {
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+
+        if (accessor != null && accessor.isMutable() && StompCommand.SEND.equals(accessor.getCommand())) {
+            accessor.setHeader(ChatMetrics.RECEIVED_AT_HEADER, System.nanoTime());
+        }
+
+        return message;
+    }
+}
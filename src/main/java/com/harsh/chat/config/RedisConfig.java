@@ -6,6 +6,12 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
 import com.fasterxml.jackson.databind.jsontype.PolymorphicTypeValidator;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.harsh.chat.service.RedisCommandMetrics;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.commonspool2.CommonsObjectPool2Metrics;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
@@ -17,7 +23,9 @@ import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -39,14 +47,36 @@ public class RedisConfig {
     @Value("${redis.password:}")
     private String redisPassword;
 
+    @Value("${redis.lettuce.pool.max-active:8}")
+    private int poolMaxActive;
+
+    @Value("${redis.lettuce.pool.max-idle:8}")
+    private int poolMaxIdle;
+
+    @Value("${redis.lettuce.pool.min-idle:0}")
+    private int poolMinIdle;
+
+    @Value("${redis.lettuce.pool.max-wait:-1ms}")
+    private Duration poolMaxWait;
+
     @Value("${cache.recent-messages.ttl:300}")
     private long recentMessagesTtl;
 
     @Value("${cache.room-info.ttl:600}")
     private long roomInfoTtl;
 
+    /**
+     * Lettuce client resources that report every command's latency to RedisCommandMetrics
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources lettuceClientResources(RedisCommandMetrics redisCommandMetrics) {
+        return DefaultClientResources.builder()
+                .commandLatencyRecorder(redisCommandMetrics)
+                .build();
+    }
+
     @Bean
-    public LettuceConnectionFactory redisConnectionFactory() {
+    public LettuceConnectionFactory redisConnectionFactory(ClientResources lettuceClientResources) {
         RedisStandaloneConfiguration config = new RedisStandaloneConfiguration();
         config.setHostName(redisHost);
         config.setPort(redisPort);
@@ -55,7 +85,30 @@ public class RedisConfig {
             config.setPassword(redisPassword);
         }
 
-        return new LettuceConnectionFactory(config);
+        // Commands share one native connection; the pool serves dedicated connections
+        // (transactions, blocking commands). Registered in JMX as redis-pool for its metrics.
+        GenericObjectPoolConfig<?> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWait(poolMaxWait);
+        poolConfig.setJmxNamePrefix("redis-pool");
+
+        LettucePoolingClientConfiguration clientConfig = LettucePoolingClientConfiguration.builder()
+                .clientResources(lettuceClientResources)
+                .poolConfig(poolConfig)
+                .build();
+
+        return new LettuceConnectionFactory(config, clientConfig);
+    }
+
+    /**
+     * Pool utilization as commons.pool2.* (active, idle, waiters, borrow wait), read from the
+     * pool's JMX bean
+     */
+    @Bean
+    public MeterBinder redisPoolMetrics() {
+        return new CommonsObjectPool2Metrics();
     }
 
     @Bean
@@ -94,6 +147,13 @@ public class RedisConfig {
         return template;
     }
 
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
+    }
+
     @Bean
     public CacheManager cacheManager(RedisConnectionFactory connectionFactory) {
         // Create a PolymorphicTypeValidator for cache manager
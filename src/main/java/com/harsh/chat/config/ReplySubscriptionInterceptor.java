@@ -0,0 +1,50 @@
+package com.harsh.chat.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets clients opt out of the full reply frames on /topic/room/{roomId}/replies.
+ * Subscribing with the header "reply-mode: compact" moves the subscription to
+ * /topic/room/{roomId}/thread-updates, which only carries THREAD_UPDATE frames;
+ * the reply itself arrives once on the main room topic with parentReplyCount set.
+ */
+@Component
+@Slf4j
+public class ReplySubscriptionInterceptor implements ChannelInterceptor {
+
+    public static final String REPLY_MODE_HEADER = "reply-mode";
+    public static final String COMPACT_MODE = "compact";
+
+    private static final String ROOM_TOPIC_PREFIX = "/topic/room/";
+    private static final String REPLIES_SUFFIX = "/replies";
+    private static final String THREAD_UPDATES_SUFFIX = "/thread-updates";
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+
+        if (accessor != null && StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            String destination = accessor.getDestination();
+
+            if (destination != null
+                    && destination.startsWith(ROOM_TOPIC_PREFIX)
+                    && destination.endsWith(REPLIES_SUFFIX)
+                    && COMPACT_MODE.equalsIgnoreCase(accessor.getFirstNativeHeader(REPLY_MODE_HEADER))) {
+
+                String compactDestination = destination.substring(0, destination.length() - REPLIES_SUFFIX.length())
+                        + THREAD_UPDATES_SUFFIX;
+                accessor.setDestination(compactDestination);
+                log.debug("Subscription {} switched to compact reply mode: {}", accessor.getSubscriptionId(), compactDestination);
+            }
+        }
+
+        return message;
+    }
+}
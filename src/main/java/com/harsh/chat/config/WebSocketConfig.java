@@ -1,6 +1,7 @@
 package com.harsh.chat.config;
 
 import com.harsh.chat.service.JwtService;
+import com.harsh.chat.service.WebSocketMetrics;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
@@ -25,6 +26,12 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final JwtService jwtService;
     private final JwtChannelInterceptor jwtChannelInterceptor;
+    private final ReplySubscriptionInterceptor replySubscriptionInterceptor;
+    private final RateLimitChannelInterceptor rateLimitChannelInterceptor;
+    private final ReceiveTimestampInterceptor receiveTimestampInterceptor;
+    private final WebSocketSessionMonitor webSocketSessionMonitor;
+    private final WebSocketMetrics webSocketMetrics;
+    private final ClientAddressHandshakeInterceptor clientAddressHandshakeInterceptor;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
@@ -46,6 +53,7 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
         String[] origins = allowedOrigin.split(",");
         registry.addEndpoint("/chat")
                 .setAllowedOrigins(origins)
+                .addInterceptors(clientAddressHandshakeInterceptor)
                 .withSockJS()
                 .setClientLibraryUrl("https://cdn.jsdelivr.net/npm/sockjs-client@1/dist/sockjs.min.js")
                 .setHeartbeatTime(25000)
@@ -53,18 +61,29 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setWebSocketEnabled(true);
 
         registry.addEndpoint("/chat")
-                .setAllowedOrigins(origins);
+                .setAllowedOrigins(origins)
+                .addInterceptors(clientAddressHandshakeInterceptor);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(jwtChannelInterceptor);
+        registration.interceptors(receiveTimestampInterceptor, jwtChannelInterceptor, replySubscriptionInterceptor,
+                rateLimitChannelInterceptor, new WebSocketTrafficInterceptor(webSocketMetrics, WebSocketMetrics.INBOUND));
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new WebSocketTrafficInterceptor(webSocketMetrics, WebSocketMetrics.OUTBOUND));
     }
 
     @Override
     public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        int sendTimeLimit = 20000;
+        webSocketSessionMonitor.setSendTimeLimit(sendTimeLimit);
+
         registration.setMessageSizeLimit(128 * 1024)
                 .setSendBufferSizeLimit(512 * 1024)
-                .setSendTimeLimit(20000);
+                .setSendTimeLimit(sendTimeLimit)
+                .addDecoratorFactory(webSocketSessionMonitor);
     }
 }
\ No newline at end of file
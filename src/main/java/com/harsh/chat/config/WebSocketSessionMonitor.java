@@ -0,0 +1,104 @@
+package com.harsh.chat.config;
+
+import com.harsh.chat.service.WebSocketMetrics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+import org.springframework.web.socket.handler.WebSocketHandlerDecoratorFactory;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every session below Spring's send buffer, so WebSocketMetrics sees how long each
+ * socket write actually blocks. A write that is still blocked is what makes the buffer grow,
+ * so this is where slow consumers show up first.
+ */
+@Component
+@RequiredArgsConstructor
+public class WebSocketSessionMonitor implements WebSocketHandlerDecoratorFactory {
+
+    private final WebSocketMetrics webSocketMetrics;
+
+    private long sendTimeLimitMs = Long.MAX_VALUE;
+
+    /**
+     * The transport's send time limit, to tell time limit closes from buffer overflows
+     */
+    public void setSendTimeLimit(long sendTimeLimitMs) {
+        this.sendTimeLimitMs = sendTimeLimitMs;
+    }
+
+    @Override
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new MonitoringHandler(handler);
+    }
+
+    private class MonitoringHandler extends WebSocketHandlerDecorator {
+
+        private final Map<String, WebSocketSession> monitored = new ConcurrentHashMap<>();
+
+        MonitoringHandler(WebSocketHandler delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+            Principal user = session.getPrincipal();
+            webSocketMetrics.sessionOpened(session.getId(), user != null ? user.getName() : null);
+
+            WebSocketSession wrapped = new MonitoredSession(session);
+            monitored.put(session.getId(), wrapped);
+            super.afterConnectionEstablished(wrapped);
+        }
+
+        @Override
+        public void handleMessage(WebSocketSession session, WebSocketMessage<?> message) throws Exception {
+            webSocketMetrics.messageReceived(session.getId());
+            super.handleMessage(monitored.getOrDefault(session.getId(), session), message);
+        }
+
+        @Override
+        public void handleTransportError(WebSocketSession session, Throwable exception) throws Exception {
+            super.handleTransportError(monitored.getOrDefault(session.getId(), session), exception);
+        }
+
+        @Override
+        public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+            WebSocketSession wrapped = monitored.remove(session.getId());
+            webSocketMetrics.sessionClosed(session.getId(), closeStatus);
+            super.afterConnectionClosed(wrapped != null ? wrapped : session, closeStatus);
+        }
+    }
+
+    private class MonitoredSession extends WebSocketSessionDecorator {
+
+        MonitoredSession(WebSocketSession delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void sendMessage(WebSocketMessage<?> message) throws IOException {
+            webSocketMetrics.sendStarted(getId(), sendTimeLimitMs);
+            try {
+                super.sendMessage(message);
+            } finally {
+                webSocketMetrics.sendFinished(getId());
+            }
+        }
+
+        @Override
+        public void close(CloseStatus status) throws IOException {
+            // Spring's send limits close through here, possibly while a write is still blocked
+            webSocketMetrics.closeStarted(getId(), status);
+            super.close(status);
+        }
+    }
+}
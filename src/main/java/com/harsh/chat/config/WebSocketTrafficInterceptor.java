@@ -0,0 +1,39 @@
+package com.harsh.chat.config;
+
+import com.harsh.chat.service.WebSocketMetrics;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.support.ChannelInterceptor;
+
+/**
+ * Counts STOMP messages per destination prefix on one client channel. On the outbound
+ * channel it also catches heartbeat misses: the simple broker's only self-initiated
+ * disconnect is for a client that went silent, and that DISCONNECT_ACK carries no original
+ * DISCONNECT message.
+ */
+public class WebSocketTrafficInterceptor implements ChannelInterceptor {
+
+    private final WebSocketMetrics webSocketMetrics;
+    private final String direction;
+
+    public WebSocketTrafficInterceptor(WebSocketMetrics webSocketMetrics, String direction) {
+        this.webSocketMetrics = webSocketMetrics;
+        this.direction = direction;
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        SimpMessageType type = SimpMessageHeaderAccessor.getMessageType(message.getHeaders());
+
+        if (type == SimpMessageType.MESSAGE) {
+            webSocketMetrics.recordMessage(direction, SimpMessageHeaderAccessor.getDestination(message.getHeaders()));
+        } else if (type == SimpMessageType.DISCONNECT_ACK
+                && message.getHeaders().get(SimpMessageHeaderAccessor.DISCONNECT_MESSAGE_HEADER) == null) {
+            webSocketMetrics.recordHeartbeatMiss(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()));
+        }
+
+        return message;
+    }
+}
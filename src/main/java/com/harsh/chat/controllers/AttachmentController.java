@@ -3,14 +3,21 @@ package com.harsh.chat.controllers;
 import com.harsh.chat.entity.Attachment;
 import com.harsh.chat.entity.Message;
 import com.harsh.chat.entity.MessageStatus;
+import com.harsh.chat.entity.UploadSession;
+import com.harsh.chat.exception.UploadOffsetException;
+import com.harsh.chat.payload.InitiateUploadRequest;
 import com.harsh.chat.payload.MessageResponse;
+import com.harsh.chat.payload.UploadSessionResponse;
 import com.harsh.chat.repositories.AttachmentRepository;
 import com.harsh.chat.service.ChatService;
+import com.harsh.chat.service.ChunkedUploadService;
+import com.harsh.chat.service.FileServingService;
 import com.harsh.chat.service.FileStorageService;
 import com.harsh.chat.service.AttachmentService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
@@ -21,11 +28,15 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/v1/attachments")
@@ -34,6 +45,8 @@ import java.util.Map;
 public class AttachmentController {
 
     private final FileStorageService fileStorageService;
+    private final FileServingService fileServingService;
+    private final ChunkedUploadService chunkedUploadService;
     private final AttachmentService attachmentService;
     private final ChatService chatService;
     private final AttachmentRepository attachmentRepository;
@@ -59,16 +72,7 @@ public class AttachmentController {
             log.info("ATTACHMENT CREATED: ID={}, fileName={}, fileUrl={}, thumbnailUrl={}",
                     attachment.getId(), attachment.getFileName(), attachment.getFileUrl(), attachment.getThumbnailUrl());
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("attachmentId", attachment.getId());
-            response.put("fileName", attachment.getFileName());
-            response.put("fileType", attachment.getFileType());
-            response.put("fileSize", attachment.getFileSize());
-            response.put("fileUrl", attachment.getFileUrl());
-            response.put("thumbnailUrl", attachment.getThumbnailUrl());
-            response.put("message", "File uploaded successfully");
-
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(uploadResponse(attachment));
 
         } catch (Exception e) {
             log.error("File upload failed: {}", e.getMessage());
@@ -77,6 +81,94 @@ public class AttachmentController {
         }
     }
 
+    /**
+     * Start a resumable upload; parts are then sent with PUT .../parts?offset=
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<UploadSessionResponse> initiateUpload(
+            @Valid @RequestBody InitiateUploadRequest request,
+            Authentication authentication
+    ) {
+        UploadSession session = chunkedUploadService.initiate(request, authentication.getName());
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .body(UploadSessionResponse.from(session, chunkedUploadService.getMaxPartSize()));
+    }
+
+    /**
+     * Upload status; receivedBytes is the offset to resume from
+     */
+    @GetMapping("/uploads/{uploadId}")
+    public ResponseEntity<UploadSessionResponse> getUpload(
+            @PathVariable String uploadId,
+            Authentication authentication
+    ) {
+        UploadSession session = chunkedUploadService.getSession(uploadId, authentication.getName());
+        return ResponseEntity.ok(UploadSessionResponse.from(session, chunkedUploadService.getMaxPartSize()));
+    }
+
+    /**
+     * Upload one part as a raw body (application/octet-stream) at the given byte offset
+     */
+    @PutMapping("/uploads/{uploadId}/parts")
+    public ResponseEntity<?> uploadPart(
+            @PathVariable String uploadId,
+            @RequestParam long offset,
+            Authentication authentication,
+            HttpServletRequest request
+    ) throws IOException {
+        long length = request.getContentLengthLong();
+        if (length < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED)
+                    .body(Map.of("error", "Content-Length is required"));
+        }
+
+        try {
+            UploadSession session = chunkedUploadService.writePart(
+                    uploadId, authentication.getName(), offset, length, request.getInputStream());
+            return ResponseEntity.ok(UploadSessionResponse.from(session, chunkedUploadService.getMaxPartSize()));
+        } catch (UploadOffsetException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "receivedBytes", e.getReceivedBytes()));
+        }
+    }
+
+    /**
+     * Verify the assembled file and create the attachment
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public ResponseEntity<?> completeUpload(
+            @PathVariable String uploadId,
+            Authentication authentication
+    ) {
+        Attachment attachment = chunkedUploadService.complete(uploadId, authentication.getName());
+        log.info("Chunked upload {} completed: attachment {}", uploadId, attachment.getId());
+        return ResponseEntity.ok(uploadResponse(attachment));
+    }
+
+    @DeleteMapping("/uploads/{uploadId}")
+    public ResponseEntity<?> abortUpload(
+            @PathVariable String uploadId,
+            Authentication authentication
+    ) {
+        chunkedUploadService.abort(uploadId, authentication.getName());
+        return ResponseEntity.noContent().build();
+    }
+
+    private Map<String, Object> uploadResponse(Attachment attachment) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("attachmentId", attachment.getId());
+        response.put("fileName", attachment.getFileName());
+        response.put("fileType", attachment.getFileType());
+        response.put("fileSize", attachment.getFileSize());
+        response.put("fileUrl", attachment.getFileUrl());
+        response.put("thumbnailUrl", attachment.getThumbnailUrl());
+        response.put("thumbnailPending", attachment.isThumbnailPending());
+        response.put("variantUrls", attachment.getVariantUrls());
+        response.put("message", "File uploaded successfully");
+
+        return response;
+    }
+
     /**
      * Download file
      */
@@ -84,22 +176,36 @@ public class AttachmentController {
     public ResponseEntity<Resource> downloadFile(
             @PathVariable String category,
             @PathVariable String fileName,
-            HttpServletRequest request
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
         log.info("File download request: {}/{}", category, fileName);
 
         try {
-            Resource resource = fileStorageService.loadFileAsResource(fileName, category);
+            URI direct = fileStorageService.directDownloadUrl(fileName, category, null, false);
+            if (direct != null) {
+                return redirectTo(direct);
+            }
+
+            FileStorageService.ServedFile served = fileStorageService.serveFile(fileName, category, null);
+            Resource resource = served.resource();
 
-            String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
+            String contentType = request.getServletContext().getMimeType(resource.getFilename());
             if (contentType == null) {
                 contentType = "application/octet-stream";
             }
 
-            return ResponseEntity.ok()
+            String disposition = "attachment; filename=\"" + resource.getFilename() + "\"";
+
+            // Downloads require authentication: keep them out of shared caches
+            if (fileServingService.isEnabled()) {
+                fileServingService.serve(served, contentType, disposition, cacheControl(served, false), request, response);
+                return null;   // Response already written
+            }
+
+            return cacheableResponse(served, false)
                     .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION,
-                            "attachment; filename=\"" + resource.getFilename() + "\"")
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition)
                     .body(resource);
 
         } catch (IOException e) {
@@ -109,6 +215,45 @@ public class AttachmentController {
     }
 
 
+    /**
+     * Send the client to the blob store's presigned URL. The URL expires, so the redirect
+     * itself is not cached; the object response carries the real caching headers.
+     */
+    private ResponseEntity<Resource> redirectTo(URI direct) {
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .location(direct)
+                .cacheControl(CacheControl.noStore())
+                .build();
+    }
+
+    /**
+     * Content-addressed files never change and are cached as immutable
+     */
+    private CacheControl cacheControl(FileStorageService.ServedFile served, boolean shared) {
+        CacheControl cacheControl = served.immutable()
+                ? CacheControl.maxAge(365, TimeUnit.DAYS).immutable()
+                : CacheControl.noCache();
+        return shared ? cacheControl.cachePublic() : cacheControl.cachePrivate();
+    }
+
+    /**
+     * Validators and caching for the Resource path (file.zero-copy=false). Spring answers
+     * If-None-Match / If-Modified-Since with 304 and Range requests with 206 for Resource
+     * bodies, so these headers are all it needs.
+     */
+    private ResponseEntity.BodyBuilder cacheableResponse(FileStorageService.ServedFile served, boolean shared)
+            throws IOException {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .cacheControl(cacheControl(served, shared))
+                .lastModified(served.resource().lastModified())
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (served.eTag() != null) {
+            builder.eTag(served.eTag());
+        }
+        return builder;
+    }
+
     /**
      * Serve file for preview (inline)
      */
@@ -116,14 +261,22 @@ public class AttachmentController {
     public ResponseEntity<Resource> viewFile(
             @PathVariable String category,
             @PathVariable String fileName,
-            HttpServletRequest request
+            @RequestParam(required = false) Integer size,
+            HttpServletRequest request,
+            HttpServletResponse response
     ) {
-        log.info("File view request: {}/{}", category, fileName);
+        log.info("File view request: {}/{} (size: {})", category, fileName, size);
 
         try {
-            Resource resource = fileStorageService.loadFileAsResource(fileName, category);
+            URI direct = fileStorageService.directDownloadUrl(fileName, category, size, true);
+            if (direct != null) {
+                return redirectTo(direct);
+            }
+
+            FileStorageService.ServedFile served = fileStorageService.serveFile(fileName, category, size);
+            Resource resource = served.resource();
 
-            String contentType = request.getServletContext().getMimeType(resource.getFile().getAbsolutePath());
+            String contentType = request.getServletContext().getMimeType(resource.getFilename());
             if (contentType == null) {
                 if (category.equals("images")) {
                     contentType = "image/jpeg";
@@ -138,9 +291,16 @@ public class AttachmentController {
                 }
             }
 
-            return ResponseEntity.ok()
+            String disposition = "inline; filename=\"" + resource.getFilename() + "\"";
+
+            if (fileServingService.isEnabled()) {
+                fileServingService.serve(served, contentType, disposition, cacheControl(served, true), request, response);
+                return null;   // Response already written
+            }
+
+            return cacheableResponse(served, true)
                     .contentType(MediaType.parseMediaType(contentType))
-                    .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + resource.getFilename() + "\"")
+                    .header(HttpHeaders.CONTENT_DISPOSITION, disposition)
                     .body(resource);
 
         } catch (IOException e) {
@@ -1,5 +1,6 @@
 package com.harsh.chat.controllers;
 
+import com.harsh.chat.annotation.RateLimit;
 import com.harsh.chat.entity.User;
 import com.harsh.chat.payload.ErrorResponse;
 import com.harsh.chat.payload.LoginRequest;
@@ -15,6 +16,7 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -25,6 +27,7 @@ public class AuthController {
     private final AuthService authService;
 
     @PostMapping("/register")
+    @RateLimit(policy = "register", scope = RateLimit.Scope.IP)
     public ResponseEntity<AuthResponse> register(@Valid @RequestBody RegisterRequest request) {
         log.info("Registration request for user: {}", request.getUsername());
         AuthResponse response = authService.register(request);
@@ -32,6 +35,7 @@ public class AuthController {
     }
 
     @PostMapping("/login")
+    @RateLimit(policy = "login", scope = RateLimit.Scope.IP)
     public ResponseEntity<AuthResponse> login(@Valid @RequestBody LoginRequest request) {
         log.info("Login request for user: {}", request.getUsername());
         AuthResponse response = authService.login(request);
@@ -46,6 +50,13 @@ public class AuthController {
         return ResponseEntity.ok(response);
     }
 
+    @PostMapping("/logout")
+    public ResponseEntity<?> logout(@RequestHeader("Authorization") String authHeader) {
+        String token = authHeader.substring(7);
+        authService.logout(token);
+        return ResponseEntity.ok(Map.of("message", "Logged out successfully"));
+    }
+
     @GetMapping("/me")
     public ResponseEntity<?> getCurrentUser() {
         try{
@@ -1,5 +1,6 @@
 package com.harsh.chat.controllers;
 
+import com.harsh.chat.annotation.RateLimit;
 import com.harsh.chat.entity.Attachment;
 import com.harsh.chat.entity.Message;
 import com.harsh.chat.entity.User;
@@ -36,32 +37,46 @@ public class ChatController {
     private final AttachmentService attachmentService;
     private final AttachmentRepository attachmentRepository;
     private final ReadReceiptService readReceiptService;
+    private final ChatMetrics chatMetrics;
 
+    /**
+     * Broadcast explicitly rather than with @SendTo, so the broker enqueue is timed and
+     * the end-to-end latency ends once it is done
+     */
     @MessageMapping("/sendMessage/{roomId}")
-    @SendTo("/topic/room/{roomId}")
-    public MessageResponse sendMessage(
+    @RateLimit(policy = "chat-message", key = "#principal.name + ':' + #roomId")
+    public void sendMessage(
             @DestinationVariable String roomId,
             @Payload MessageRequest request,
-            Principal principal
+            Principal principal,
+            @Header(name = ChatMetrics.RECEIVED_AT_HEADER, required = false) Long receivedAt
     ) {
-        String username = principal.getName();
-        log.info("User {} sending message to room {}", username, roomId);
+        String outcome = ChatMetrics.OUTCOME_ERROR;
+        try {
+            String username = principal.getName();
+            log.info("User {} sending message to room {}", username, roomId);
 
-        request.setSender(username);
+            request.setSender(username);
 
-        if (!roomId.equals(request.getRoomId())) {
-            throw new IllegalArgumentException("Room ID mismatch");
-        }
+            if (!roomId.equals(request.getRoomId())) {
+                throw new IllegalArgumentException("Room ID mismatch");
+            }
 
-        Message savedMessage = chatService.saveMessage(request);
+            Message savedMessage = chatService.saveMessage(request);
 
-        userStatusService.userStoppedTyping(username, roomId);
+            userStatusService.userStoppedTyping(username, roomId);
 
-        return MessageResponse.from(savedMessage);
+            MessageResponse response = MessageResponse.from(savedMessage);
+            chatMetrics.timeStage("broadcast", () -> messagingTemplate.convertAndSend("/topic/room/" + roomId, response));
+            outcome = ChatMetrics.OUTCOME_SUCCESS;
+        } finally {
+            chatMetrics.recordSend(roomId, receivedAt, outcome);
+        }
     }
 
 
     @MessageMapping("/typing/start/{roomId}")
+    @RateLimit(policy = "typing", key = "#principal.name + ':' + #roomId")
     public void startTyping(
             @DestinationVariable String roomId,
             Principal principal
@@ -221,6 +236,7 @@ public class ChatController {
 
 
     @MessageMapping("/delivered/{roomId}")
+    @RateLimit(policy = "receipts")
     public void markAsDelivered(
             @DestinationVariable String roomId,
             @Payload Map<String, String> payload,
@@ -235,6 +251,7 @@ public class ChatController {
     }
 
     @MessageMapping("/read/{roomId}")
+    @RateLimit(policy = "receipts")
     public void markAsRead(
             @DestinationVariable String roomId,
             @Payload Map<String, String> payload,
@@ -249,6 +266,7 @@ public class ChatController {
     }
 
     @MessageMapping("/read/bulk/{roomId}")
+    @RateLimit(policy = "receipts")
     public void markBulkAsRead(
             @DestinationVariable String roomId,
             @Payload Map<String, Set<String>> payload,
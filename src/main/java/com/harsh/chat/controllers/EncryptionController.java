@@ -41,12 +41,13 @@ public class EncryptionController {
         String username = authentication.getName();
         log.info("User {} regenerating key for room {}", username, roomId);
 
-        String newKey = encryptionService.generateRoomKey(roomId);
+        int keyVersion = encryptionService.regenerateRoomKey(roomId);
 
         return ResponseEntity.ok(Map.of(
                 "roomId", roomId,
                 "message", "Room key regenerated successfully",
-                "encrypted", true
+                "encrypted", true,
+                "keyVersion", keyVersion
         ));
     }
 
@@ -1,5 +1,6 @@
 package com.harsh.chat.controllers;
 
+import com.harsh.chat.annotation.RateLimit;
 import com.harsh.chat.payload.ReactionDTO;
 import com.harsh.chat.service.ReactionService;
 import lombok.RequiredArgsConstructor;
@@ -27,6 +28,7 @@ public class ReactionController {
      * Add reaction to a message (WebSocket)
      */
     @MessageMapping("/reaction/add/{roomId}")
+    @RateLimit(policy = "reactions")
     public void addReaction(
             @DestinationVariable String roomId,
             @Payload Map<String, String> payload,
@@ -46,6 +48,7 @@ public class ReactionController {
      * Remove reaction from a message (WebSocket)
      */
     @MessageMapping("/reaction/remove/{roomId}")
+    @RateLimit(policy = "reactions")
     public void removeReaction(
             @DestinationVariable String roomId,
             @Payload Map<String, String> payload,
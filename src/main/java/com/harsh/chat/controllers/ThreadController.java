@@ -1,8 +1,11 @@
 package com.harsh.chat.controllers;
 
+import com.harsh.chat.annotation.RateLimit;
 import com.harsh.chat.payload.ReplyDTO;
 import com.harsh.chat.payload.MessageRequest;
 import com.harsh.chat.payload.MessageResponse;
+import com.harsh.chat.payload.ThreadPageResponse;
+import com.harsh.chat.payload.ThreadSummaryDTO;
 import com.harsh.chat.service.ThreadService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -29,6 +32,7 @@ public class ThreadController {
      * Reply to a message (WebSocket)
      */
     @MessageMapping("/reply/{roomId}")
+    @RateLimit(policy = "chat-message", key = "#principal.name + ':' + #roomId")
     public void replyToMessage(
             @DestinationVariable String roomId,
             @Payload Map<String, String> payload,
@@ -57,6 +61,27 @@ public class ThreadController {
         return ResponseEntity.ok(replies);
     }
 
+    /**
+     * Stream thread replies with a cursor (REST)
+     */
+    @GetMapping("/api/v1/messages/{parentMessageId}/replies/cursor")
+    public ResponseEntity<ThreadPageResponse> getThreadRepliesAfter(
+            @PathVariable String parentMessageId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size
+    ) {
+        ThreadPageResponse page = threadService.getThreadRepliesAfter(parentMessageId, cursor, size);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Get thread summary (reply count, last reply, participants)
+     */
+    @GetMapping("/api/v1/messages/{messageId}/thread/summary")
+    public ResponseEntity<ThreadSummaryDTO> getThreadSummary(@PathVariable String messageId) {
+        return ResponseEntity.ok(threadService.getThreadSummary(messageId));
+    }
+
     /**
      * Get thread info
      */
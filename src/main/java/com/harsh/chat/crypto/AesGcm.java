@@ -0,0 +1,123 @@
+package com.harsh.chat.crypto;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * AES-256-GCM primitives shared by message encryption and key wrapping.
+ * Sealed layout: 12-byte random IV, ciphertext, 16-byte tag.
+ */
+public final class AesGcm {
+
+    public static final String ALGORITHM = "AES/GCM/NoPadding";
+    public static final int IV_LENGTH = 12;
+    public static final int TAG_LENGTH = 128;
+    public static final int TAG_BYTES = TAG_LENGTH / 8;
+
+    // Cipher.getInstance does a provider lookup per call and a Cipher is not thread-safe,
+    // so each thread keeps one and re-inits it per message with a fresh IV
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " not available", e);
+        }
+    });
+
+    // Seeding is the expensive part of a SecureRandom; one shared instance is thread-safe
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
+
+    private AesGcm() {
+    }
+
+    public static int sealedLength(int plaintextLength) {
+        return IV_LENGTH + plaintextLength + TAG_BYTES;
+    }
+
+    public static SecureRandom secureRandom() {
+        return SECURE_RANDOM;
+    }
+
+    /**
+     * Seal plaintext into out at outOffset (needs sealedLength bytes). Returns bytes written.
+     */
+    public static int seal(byte[] plaintext, SecretKey key, byte[] out, int outOffset)
+            throws GeneralSecurityException {
+        byte[] iv = newIv();
+        System.arraycopy(iv, 0, out, outOffset, IV_LENGTH);
+
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        return IV_LENGTH + cipher.doFinal(plaintext, 0, plaintext.length, out, outOffset + IV_LENGTH);
+    }
+
+    public static byte[] seal(byte[] plaintext, SecretKey key) throws GeneralSecurityException {
+        byte[] sealed = new byte[sealedLength(plaintext.length)];
+        seal(plaintext, key, sealed, 0);
+        return sealed;
+    }
+
+    public static byte[] open(byte[] sealed, int offset, int length, SecretKey key) throws GeneralSecurityException {
+        if (length < IV_LENGTH + TAG_BYTES) {
+            throw new AEADBadTagException("Ciphertext too short");
+        }
+
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, sealed, offset, IV_LENGTH));
+        return cipher.doFinal(sealed, offset + IV_LENGTH, length - IV_LENGTH);
+    }
+
+    /**
+     * Seal the plaintext's remaining bytes into out. Returns bytes written.
+     */
+    public static int seal(ByteBuffer plaintext, ByteBuffer out, SecretKey key) throws GeneralSecurityException {
+        byte[] iv = newIv();
+
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        out.put(iv);
+        return IV_LENGTH + cipher.doFinal(plaintext, out);
+    }
+
+    /**
+     * Open the sealed buffer's remaining bytes into out. Returns the plaintext length.
+     */
+    public static int open(ByteBuffer sealed, ByteBuffer out, SecretKey key) throws GeneralSecurityException {
+        if (sealed.remaining() < IV_LENGTH + TAG_BYTES) {
+            throw new AEADBadTagException("Ciphertext too short");
+        }
+        byte[] iv = new byte[IV_LENGTH];
+        sealed.get(iv);
+
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        return cipher.doFinal(sealed, out);
+    }
+
+    /**
+     * base64(iv) + ":" + base64(data), as written before the single-array format
+     */
+    public static byte[] openLegacy(String encrypted, SecretKey key) throws GeneralSecurityException {
+        int separator = encrypted.indexOf(':');
+        byte[] iv = BASE64_DECODER.decode(encrypted.substring(0, separator));
+        byte[] data = BASE64_DECODER.decode(encrypted.substring(separator + 1));
+
+        Cipher cipher = CIPHER.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH, iv));
+        return cipher.doFinal(data);
+    }
+
+    private static byte[] newIv() {
+        byte[] iv = new byte[IV_LENGTH];
+        SECURE_RANDOM.nextBytes(iv);
+        return iv;
+    }
+}
@@ -0,0 +1,332 @@
+package com.harsh.chat.crypto;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Segmented AES-256-GCM for files. The plaintext is cut into fixed-size segments, each
+ * sealed on its own, so a file is encrypted and decrypted as a stream with one segment in
+ * memory, and a byte range is read by opening only the segments it covers.
+ * Layout: header, then per segment up to segmentSize ciphertext bytes plus a 16-byte tag.
+ * Only the last segment may be short (it is empty only for an empty file).
+ * Header: magic "CHATSEG1", segment size, length-prefixed wrapped file key, 7-byte nonce prefix.
+ * Segment nonce: nonce prefix, 4-byte segment index, then 1 for the last segment, else 0.
+ * The index stops segments being reordered and the flag stops truncation at a segment
+ * boundary; the header is the associated data of every segment.
+ */
+public final class StreamingAead {
+
+    public static final int NONCE_PREFIX_LENGTH = 7;
+    public static final int MIN_SEGMENT_SIZE = 4 * 1024;
+    public static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final byte[] MAGIC = "CHATSEG1".getBytes(StandardCharsets.US_ASCII);
+    private static final int MAX_WRAPPED_KEY_LENGTH = 256;
+    private static final long MAX_SEGMENTS = 1L << 32;
+
+    // Longest header a reader has to look at before knowing whether a file is encrypted
+    public static final int MAX_HEADER_LENGTH =
+            MAGIC.length + Integer.BYTES + Short.BYTES + MAX_WRAPPED_KEY_LENGTH + NONCE_PREFIX_LENGTH;
+
+    private StreamingAead() {
+    }
+
+    /**
+     * Per-file parameters, written in front of the first segment
+     */
+    public static final class Header {
+
+        private final int segmentSize;
+        private final byte[] wrappedKey;
+        private final byte[] noncePrefix;
+        private final byte[] encoded;
+
+        private Header(int segmentSize, byte[] wrappedKey, byte[] noncePrefix) {
+            this.segmentSize = segmentSize;
+            this.wrappedKey = wrappedKey;
+            this.noncePrefix = noncePrefix;
+            this.encoded = ByteBuffer.allocate(MAGIC.length + Integer.BYTES + Short.BYTES
+                            + wrappedKey.length + NONCE_PREFIX_LENGTH)
+                    .put(MAGIC)
+                    .putInt(segmentSize)
+                    .putShort((short) wrappedKey.length)
+                    .put(wrappedKey)
+                    .put(noncePrefix)
+                    .array();
+        }
+
+        /**
+         * Header for a new file, with a fresh random nonce prefix
+         */
+        public static Header create(int segmentSize, byte[] wrappedKey) {
+            if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE) {
+                throw new IllegalArgumentException("Segment size out of range: " + segmentSize);
+            }
+            if (wrappedKey.length == 0 || wrappedKey.length > MAX_WRAPPED_KEY_LENGTH) {
+                throw new IllegalArgumentException("Wrapped key length out of range: " + wrappedKey.length);
+            }
+
+            byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+            AesGcm.secureRandom().nextBytes(noncePrefix);
+            return new Header(segmentSize, wrappedKey, noncePrefix);
+        }
+
+        /**
+         * Parse the header at the start of the stream. Returns null if the stream does not
+         * start with one, i.e. the file is plaintext.
+         */
+        public static Header read(InputStream in) throws IOException {
+            byte[] magic = in.readNBytes(MAGIC.length);
+            if (!Arrays.equals(magic, MAGIC)) {
+                return null;
+            }
+
+            DataInputStream data = new DataInputStream(in);
+            int segmentSize = data.readInt();
+            int wrappedKeyLength = data.readUnsignedShort();
+            if (segmentSize < MIN_SEGMENT_SIZE || segmentSize > MAX_SEGMENT_SIZE
+                    || wrappedKeyLength == 0 || wrappedKeyLength > MAX_WRAPPED_KEY_LENGTH) {
+                throw new IOException("Corrupt encrypted file header");
+            }
+
+            byte[] wrappedKey = new byte[wrappedKeyLength];
+            data.readFully(wrappedKey);
+            byte[] noncePrefix = new byte[NONCE_PREFIX_LENGTH];
+            data.readFully(noncePrefix);
+            return new Header(segmentSize, wrappedKey, noncePrefix);
+        }
+
+        public int segmentSize() {
+            return segmentSize;
+        }
+
+        public byte[] wrappedKey() {
+            return wrappedKey.clone();
+        }
+
+        public int length() {
+            return encoded.length;
+        }
+
+        public int sealedSegmentSize() {
+            return segmentSize + AesGcm.TAG_BYTES;
+        }
+
+        /**
+         * Number of segments in a stored file of the given total length
+         */
+        public long segmentCount(long storedLength) {
+            long body = storedLength - length();
+            return Math.max(1, (body + sealedSegmentSize() - 1) / sealedSegmentSize());
+        }
+
+        public long plaintextLength(long storedLength) {
+            return storedLength - length() - segmentCount(storedLength) * AesGcm.TAG_BYTES;
+        }
+
+        /**
+         * Stored offset at which a segment starts
+         */
+        public long segmentOffset(long segmentIndex) {
+            return length() + segmentIndex * sealedSegmentSize();
+        }
+
+        private void initCipher(Cipher cipher, int mode, SecretKey key, long segmentIndex, boolean last)
+                throws GeneralSecurityException {
+            byte[] iv = new byte[AesGcm.IV_LENGTH];
+            System.arraycopy(noncePrefix, 0, iv, 0, NONCE_PREFIX_LENGTH);
+            ByteBuffer.wrap(iv, NONCE_PREFIX_LENGTH, Integer.BYTES).putInt((int) segmentIndex);
+            iv[AesGcm.IV_LENGTH - 1] = (byte) (last ? 1 : 0);
+
+            cipher.init(mode, key, new GCMParameterSpec(AesGcm.TAG_LENGTH, iv));
+            cipher.updateAAD(encoded);
+        }
+    }
+
+    /**
+     * Writes the header, then seals the plaintext written to it one segment at a time.
+     * The last segment is sealed on close, which also closes the underlying stream.
+     */
+    public static final class EncryptingOutputStream extends OutputStream {
+
+        private final OutputStream out;
+        private final SecretKey key;
+        private final Header header;
+        private final Cipher cipher;
+        private final byte[] segment;
+        private final byte[] sealed;
+        private int buffered;
+        private long segmentIndex;
+        private boolean closed;
+
+        public EncryptingOutputStream(OutputStream out, SecretKey key, Header header) throws IOException {
+            this.out = out;
+            this.key = key;
+            this.header = header;
+            this.cipher = newCipher();
+            this.segment = new byte[header.segmentSize()];
+            this.sealed = new byte[header.sealedSegmentSize()];
+            out.write(header.encoded);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+
+            while (len > 0) {
+                // A full segment is sealed only once more data arrives: the last one is flagged
+                if (buffered == segment.length) {
+                    sealSegment(false);
+                }
+                int n = Math.min(len, segment.length - buffered);
+                System.arraycopy(b, off, segment, buffered, n);
+                buffered += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try (out) {
+                sealSegment(true);
+                out.flush();
+            }
+        }
+
+        private void sealSegment(boolean last) throws IOException {
+            if (segmentIndex >= MAX_SEGMENTS) {
+                throw new IOException("File too large to encrypt");
+            }
+            try {
+                header.initCipher(cipher, Cipher.ENCRYPT_MODE, key, segmentIndex, last);
+                int length = cipher.doFinal(segment, 0, buffered, sealed, 0);
+                out.write(sealed, 0, length);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Could not encrypt segment " + segmentIndex, e);
+            }
+            segmentIndex++;
+            buffered = 0;
+        }
+    }
+
+    /**
+     * Plaintext of a stored file from a segment boundary on. The source must be positioned at
+     * {@link Header#segmentOffset(long)} of firstSegment; segmentCount comes from the stored
+     * length. Throws IOException on a segment that fails authentication or is cut short.
+     */
+    public static final class DecryptingInputStream extends InputStream {
+
+        private final InputStream in;
+        private final SecretKey key;
+        private final Header header;
+        private final long segmentCount;
+        private final Cipher cipher;
+        private final byte[] sealed;
+        private final byte[] plaintext;
+        private long segmentIndex;
+        private int position;
+        private int limit;
+
+        public DecryptingInputStream(InputStream in, SecretKey key, Header header,
+                                     long firstSegment, long segmentCount) throws IOException {
+            this.in = in;
+            this.key = key;
+            this.header = header;
+            this.segmentCount = segmentCount;
+            this.cipher = newCipher();
+            this.sealed = new byte[header.sealedSegmentSize()];
+            this.plaintext = new byte[header.segmentSize()];
+            this.segmentIndex = firstSegment;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == limit && !nextSegment()) {
+                return -1;
+            }
+            return plaintext[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (position == limit && !nextSegment()) {
+                return -1;
+            }
+
+            int n = Math.min(len, limit - position);
+            System.arraycopy(plaintext, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private boolean nextSegment() throws IOException {
+            // Empty segments only occur for empty files, so loop until data or the end
+            while (segmentIndex < segmentCount) {
+                boolean last = segmentIndex == segmentCount - 1;
+                int length = in.readNBytes(sealed, 0, sealed.length);
+                if (length < AesGcm.TAG_BYTES || (!last && length < sealed.length)) {
+                    throw new IOException("Encrypted file truncated at segment " + segmentIndex);
+                }
+
+                try {
+                    header.initCipher(cipher, Cipher.DECRYPT_MODE, key, segmentIndex, last);
+                    limit = cipher.doFinal(sealed, 0, length, plaintext, 0);
+                } catch (GeneralSecurityException e) {
+                    throw new IOException("Segment " + segmentIndex + " failed authentication", e);
+                }
+                position = 0;
+                segmentIndex++;
+
+                if (limit > 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static Cipher newCipher() throws IOException {
+        try {
+            return Cipher.getInstance(AesGcm.ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IOException(AesGcm.ALGORITHM + " not available", e);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
+import java.util.Map;
 
 @Document("attachments")
 @Data
@@ -33,6 +34,9 @@ public class Attachment {
     private String thumbnailPath;
     private String fileUrl;
     private String thumbnailUrl;
+    private boolean thumbnailPending;   // Derivatives are being generated in the background
+    private Map<String, String> variantUrls;   // Longest side in px -> resized JPEG (poster frame for videos)
+    private String contentHash;   // SHA-256 of the stored bytes (hex)
 
     private Integer width;        // For images/videos
     private Integer height;       // For images/videos
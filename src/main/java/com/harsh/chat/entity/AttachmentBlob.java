@@ -0,0 +1,46 @@
+package com.harsh.chat.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * A stored file shared by every attachment with the same content.
+ * The id is the SHA-256 of the bytes; refCount is the number of attachments pointing here.
+ * A record marked pending has been claimed by an upload whose file is not in the blob store
+ * yet; one marked deleting is a tombstone whose files are going away. Neither may be reused
+ * until the flag is cleared or the record removed.
+ */
+@Document("attachment_blobs")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentBlob {
+
+    @Id
+    private String hash;
+
+    private String fileType;
+    private long fileSize;
+    private String filePath;
+    private String fileUrl;
+    private String thumbnailPath;
+    private String thumbnailUrl;
+    private boolean thumbnailPending;   // Derivatives are being generated in the background
+    private Map<String, String> variantPaths;   // Longest side in px -> file
+    private Map<String, String> variantUrls;
+    private Integer width;
+    private Integer height;
+
+    private long refCount;
+    private boolean pending;    // Inserted by an upload whose file is still being stored
+    private boolean deleting;   // Last reference released; files are being removed before the record
+    private LocalDateTime createdAt;
+}
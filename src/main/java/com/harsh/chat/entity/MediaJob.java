@@ -0,0 +1,46 @@
+package com.harsh.chat.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Persistent queue entry for generating a blob's derivatives (thumbnails etc.).
+ * Workers claim PENDING jobs, or RUNNING jobs whose lease expired, oldest first.
+ */
+@Document("media_jobs")
+@CompoundIndex(name = "status_available_idx", def = "{'status': 1, 'availableAt': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class MediaJob {
+
+    @Id
+    private String id;
+
+    @Indexed(unique = true)
+    private String blobHash;
+
+    private String sourcePath;
+    private String fileType;
+
+    @Builder.Default
+    private MediaJobStatus status = MediaJobStatus.PENDING;
+
+    private int attempts;
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime availableAt;   // Not claimable before this (retry backoff or running lease)
+
+    @Indexed(expireAfterSeconds = 604800)
+    private LocalDateTime completedAt;   // Finished jobs are purged after 7 days
+}
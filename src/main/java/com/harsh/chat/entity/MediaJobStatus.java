@@ -0,0 +1,8 @@
+package com.harsh.chat.entity;
+
+public enum MediaJobStatus {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+}
@@ -7,6 +7,7 @@ import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -17,6 +18,7 @@ import java.util.Map;
 import java.util.Set;
 
 @Document(collection = "messages")
+@CompoundIndex(name = "parent_timestamp_idx", def = "{'parentMessageId': 1, 'timestamp': 1}")
 @Getter
 @Setter
 @NoArgsConstructor
@@ -76,7 +78,7 @@ public class Message {
 
     // Encryption
 //    private boolean isEncrypted;
-//    private String encryptedContent; // Store encrypted content
+    private String encryptedContent; // base64(version + iv + ciphertext + tag); null for plain text
 //    private String encryptionIv;      // Initialization vector
 
     public static Message create(String roomId, String sender, String content) {
@@ -0,0 +1,33 @@
+package com.harsh.chat.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * One version of a room's message key, stored wrapped with the master key.
+ * Rotation adds a version; older versions stay so earlier messages still decrypt.
+ */
+@Document("room_keys")
+@CompoundIndex(name = "room_version_idx", def = "{'roomId': 1, 'version': -1}", unique = true)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RoomKey {
+
+    @Id
+    private String id;
+
+    private String roomId;
+    private int version;
+    private String wrappedKey;
+
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,46 @@
+package com.harsh.chat.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * A resumable upload in progress. Bytes are appended to a part file under the upload
+ * temp directory; receivedBytes is the contiguous prefix already on disk, which is
+ * where the client resumes after a dropped connection.
+ */
+@Document("upload_sessions")
+@CompoundIndex(name = "uploader_status_idx", def = "{'uploadedBy': 1, 'status': 1}")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSession {
+
+    @Id
+    private String id;
+
+    private String uploadedBy;
+    private String roomId;
+    private String fileName;
+    private long totalSize;
+    private String expectedHash;      // SHA-256 hex the assembled file must match (optional)
+    private String partPath;
+
+    private long receivedBytes;
+
+    @Builder.Default
+    private UploadSessionStatus status = UploadSessionStatus.ACTIVE;
+
+    private LocalDateTime createdAt;
+
+    @Indexed
+    private LocalDateTime updatedAt;  // Sessions idle past the TTL are garbage-collected
+}
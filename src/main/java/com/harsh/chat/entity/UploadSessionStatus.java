@@ -0,0 +1,6 @@
+package com.harsh.chat.entity;
+
+public enum UploadSessionStatus {
+    ACTIVE,
+    COMPLETING
+}
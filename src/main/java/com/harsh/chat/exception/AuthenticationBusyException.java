@@ -0,0 +1,17 @@
+package com.harsh.chat.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class AuthenticationBusyException extends BaseRuntimeException {
+
+    private static final HttpStatus STATUS = HttpStatus.SERVICE_UNAVAILABLE;
+    private static final String ERROR_CODE = "AUTH_002";
+
+    public AuthenticationBusyException(String message) {
+        super(message, STATUS, ERROR_CODE);
+    }
+
+    public AuthenticationBusyException(String message, Throwable cause) {
+        super(message, STATUS, ERROR_CODE, cause);
+    }
+}
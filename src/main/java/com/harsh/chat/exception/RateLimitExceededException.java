@@ -0,0 +1,13 @@
+package com.harsh.chat.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class RateLimitExceededException extends BaseRuntimeException {
+
+    private static final HttpStatus STATUS = HttpStatus.TOO_MANY_REQUESTS;
+    private static final String ERROR_CODE = "RATE_001";
+
+    public RateLimitExceededException(String message) {
+        super(message, STATUS, ERROR_CODE);
+    }
+}
@@ -0,0 +1,18 @@
+package com.harsh.chat.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+@Getter
+public class UploadOffsetException extends BaseRuntimeException {
+
+    private static final HttpStatus STATUS = HttpStatus.CONFLICT;
+    private static final String ERROR_CODE = "UPLOAD_001";
+
+    private final long receivedBytes;
+
+    public UploadOffsetException(long offset, long receivedBytes) {
+        super("Part offset " + offset + " is past the received bytes: " + receivedBytes, STATUS, ERROR_CODE);
+        this.receivedBytes = receivedBytes;
+    }
+}
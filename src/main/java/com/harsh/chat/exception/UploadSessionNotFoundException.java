@@ -0,0 +1,13 @@
+package com.harsh.chat.exception;
+
+import org.springframework.http.HttpStatus;
+
+public class UploadSessionNotFoundException extends BaseRuntimeException {
+
+    private static final HttpStatus STATUS = HttpStatus.NOT_FOUND;
+    private static final String ERROR_CODE = "UPLOAD_002";
+
+    public UploadSessionNotFoundException(String uploadId) {
+        super("Upload session not found: " + uploadId, STATUS, ERROR_CODE);
+    }
+}
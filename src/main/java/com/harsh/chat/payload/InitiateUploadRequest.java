@@ -0,0 +1,28 @@
+package com.harsh.chat.payload;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Data
+@Builder
+public class InitiateUploadRequest {
+
+    @NotBlank(message = "File name cannot be blank")
+    private String fileName;
+
+    @NotBlank(message = "Room ID cannot be blank")
+    private String roomId;
+
+    @Positive(message = "Total size must be positive")
+    private long totalSize;
+
+    @Pattern(regexp = "^[0-9a-fA-F]{64}$", message = "sha256 must be 64 hex characters")
+    private String sha256;     // Optional: checked against the assembled file on completion
+}
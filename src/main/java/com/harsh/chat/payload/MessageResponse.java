@@ -50,6 +50,7 @@ public class MessageResponse {
     private int replyCount;
     private Set<String> replyIds;
     private boolean isReply;
+    private Integer parentReplyCount;   // Set on reply broadcasts so one frame carries the thread update
 
     // Preview for reply
     private MessagePreview parentPreview;
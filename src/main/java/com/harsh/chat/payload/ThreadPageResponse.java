@@ -0,0 +1,19 @@
+package com.harsh.chat.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThreadPageResponse {
+    private String parentMessageId;
+    private List<MessageResponse> replies;
+    private String nextCursor;     // Pass back as ?cursor= to fetch the next page
+    private boolean hasMore;
+}
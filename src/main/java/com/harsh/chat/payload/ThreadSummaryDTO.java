@@ -0,0 +1,36 @@
+package com.harsh.chat.payload;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ThreadSummaryDTO {
+    private static final int PREVIEW_LENGTH = 200;
+
+    private String parentMessageId;
+    private String roomId;
+    private int replyCount;
+
+    // Last reply preview
+    private String lastReplyId;
+    private String lastReplySender;
+    private String lastReplyContent;
+    private LocalDateTime lastReplyAt;
+
+    private Set<String> participants;
+
+    /**
+     * Last-reply preview text, the same whether the summary comes from the cache or the database
+     */
+    public static String preview(String content) {
+        return content != null && content.length() > PREVIEW_LENGTH ? content.substring(0, PREVIEW_LENGTH) : content;
+    }
+}
@@ -0,0 +1,31 @@
+package com.harsh.chat.payload;
+
+import com.harsh.chat.entity.UploadSession;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadSessionResponse {
+    private String uploadId;
+    private String fileName;
+    private long totalSize;
+    private long receivedBytes;    // Resume by sending the next part at this offset
+    private long maxPartSize;
+    private String status;
+
+    public static UploadSessionResponse from(UploadSession session, long maxPartSize) {
+        return UploadSessionResponse.builder()
+                .uploadId(session.getId())
+                .fileName(session.getFileName())
+                .totalSize(session.getTotalSize())
+                .receivedBytes(session.getReceivedBytes())
+                .maxPartSize(maxPartSize)
+                .status(session.getStatus().name())
+                .build();
+    }
+}
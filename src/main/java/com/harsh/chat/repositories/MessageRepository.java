@@ -1,6 +1,7 @@
 package com.harsh.chat.repositories;
 
 import com.harsh.chat.entity.Message;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -9,6 +10,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
 
 @Repository
@@ -34,6 +36,21 @@ public interface MessageRepository extends MongoRepository<Message, String> {
 
  List<Message> findByParentMessageIdOrderByTimestampAsc(String parentMessageId);
 
+ // Slice-style paging: returning a List skips the count query a Page would issue
+ List<Message> findByParentMessageIdOrderByTimestampAsc(String parentMessageId, Pageable pageable);
+
+ // Keyset paging over the {parentMessageId, timestamp} index, _id breaks timestamp ties
+ @Query("{ 'parentMessageId': ?0, $or: [ { 'timestamp': { $gt: ?1 } }, { 'timestamp': ?1, '_id': { $gt: ?2 } } ] }")
+ List<Message> findRepliesAfter(String parentMessageId, LocalDateTime timestamp, ObjectId afterId, Pageable pageable);
+
+ Optional<Message> findFirstByParentMessageIdOrderByTimestampDesc(String parentMessageId);
+
+ @Query(value = "{ '_id': ?0 }", fields = "{ 'roomId': 1, 'replyCount': 1, 'hasReplies': 1 }")
+ Optional<Message> findThreadInfoById(String messageId);
+
+ @Query(value = "{ 'parentMessageId': ?0 }", fields = "{ 'sender': 1 }")
+ List<Message> findReplySendersByParentMessageId(String parentMessageId);
+
  long countByParentMessageId(String parentMessageId);
 
  @Query("{ 'roomId': ?0, 'parentMessageId': { $exists: true, $ne: null } }")
@@ -0,0 +1,236 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.crypto.StreamingAead;
+import com.harsh.chat.storage.BlobStore;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Attachment encryption at rest, in StreamingAead's segmented format. Each file gets its own
+ * random key, kept in the file's header wrapped with the master key, so nothing about a
+ * file's encryption lives in Mongo. Files are encrypted while they are copied in and
+ * decrypted segment by segment while served; a range read only decrypts the segments it
+ * covers, so video seeking works on encrypted media.
+ * Reading is self-describing: a file without the header is plaintext and served as is, so
+ * files stored before encryption was enabled (or after it is disabled) keep working.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentEncryptionService {
+
+    private final MasterKeyService masterKeyService;
+
+    @Value("${file.encryption.enabled:false}")
+    private boolean enabled;
+
+    @Value("${file.encryption.segment-size:65536}")
+    private int segmentSize;
+
+    @PostConstruct
+    public void init() {
+        if (segmentSize < StreamingAead.MIN_SEGMENT_SIZE || segmentSize > StreamingAead.MAX_SEGMENT_SIZE) {
+            throw new IllegalStateException("file.encryption.segment-size must be between "
+                    + StreamingAead.MIN_SEGMENT_SIZE + " and " + StreamingAead.MAX_SEGMENT_SIZE);
+        }
+        log.info("Attachment encryption at rest: {} ({} byte segments)", enabled ? "on" : "off", segmentSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Stream that encrypts everything written to it into out, under a new file key.
+     * Closing it closes out. When encryption at rest is off this is out itself.
+     */
+    public OutputStream encryptingStream(OutputStream out) throws IOException {
+        if (!enabled) {
+            return out;
+        }
+        SecretKey fileKey = newFileKey();
+        StreamingAead.Header header = StreamingAead.Header.create(segmentSize, masterKeyService.wrapBytes(fileKey));
+        return new StreamingAead.EncryptingOutputStream(out, fileKey, header);
+    }
+
+    /**
+     * The stored object as plaintext: the resource itself for a plaintext file, otherwise an
+     * {@link EncryptedResource} that decrypts on read. The object must exist.
+     */
+    public Resource decrypting(Resource stored) throws IOException {
+        StreamingAead.Header header;
+        try (InputStream in = new BufferedInputStream(openAt(stored, 0, StreamingAead.MAX_HEADER_LENGTH),
+                StreamingAead.MAX_HEADER_LENGTH)) {
+            header = StreamingAead.Header.read(in);
+        }
+
+        if (header == null) {
+            return stored;
+        }
+        return new EncryptedResource(stored, header, masterKeyService.unwrap(header.wrappedKey()),
+                stored.contentLength());
+    }
+
+    /**
+     * A plaintext local file for decoders that need one. Returns the source itself if it
+     * is not encrypted; otherwise the source is closed and a temporary decrypted copy is
+     * made in workDir, removed when the returned file is closed.
+     */
+    public BlobStore.LocalFile decryptToLocalFile(BlobStore.LocalFile source, Path workDir) throws IOException {
+        Path plaintext = null;
+        try {
+            Resource resource = decrypting(new FileSystemResource(source.path()));
+            if (!(resource instanceof EncryptedResource)) {
+                return source;
+            }
+
+            plaintext = Files.createTempFile(workDir, "plain-", null);
+            try (InputStream in = resource.getInputStream()) {
+                Files.copy(in, plaintext, StandardCopyOption.REPLACE_EXISTING);
+            }
+            source.close();
+            return new BlobStore.LocalFile(plaintext, true);
+
+        } catch (IOException | RuntimeException e) {
+            source.close();
+            if (plaintext != null) {
+                Files.deleteIfExists(plaintext);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Plaintext view of an encrypted object. contentLength is the plaintext length, and
+     * {@link #getInputStream(long)} starts at any plaintext offset.
+     */
+    public static class EncryptedResource extends AbstractResource {
+
+        private final Resource stored;
+        private final StreamingAead.Header header;
+        private final SecretKey fileKey;
+        private final long storedLength;
+
+        EncryptedResource(Resource stored, StreamingAead.Header header, SecretKey fileKey, long storedLength) {
+            this.stored = stored;
+            this.header = header;
+            this.fileKey = fileKey;
+            this.storedLength = storedLength;
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return header.plaintextLength(storedLength);
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return stored.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return stored.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return "Encrypted " + stored.getDescription();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return getInputStream(0);
+        }
+
+        /**
+         * Plaintext from position on; only the segments from the one holding position are read
+         */
+        public InputStream getInputStream(long position) throws IOException {
+            long segment = position / header.segmentSize();
+            long offset = header.segmentOffset(segment);
+
+            InputStream in = new StreamingAead.DecryptingInputStream(
+                    openAt(stored, offset, storedLength - offset), fileKey, header,
+                    segment, header.segmentCount(storedLength));
+            try {
+                in.skipNBytes(position - segment * header.segmentSize());
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+            return in;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * Stream over the stored object from offset, without reading what precedes it where the
+     * store allows (local file position, ranged GET)
+     */
+    private static InputStream openAt(Resource stored, long offset, long length) throws IOException {
+        if (stored.isFile()) {
+            FileChannel channel = FileChannel.open(stored.getFile().toPath(), StandardOpenOption.READ);
+            channel.position(offset);
+            return Channels.newInputStream(channel);
+        }
+        if (stored instanceof BlobStore.RangeReadable ranged) {
+            return ranged.getInputStream(offset, length);
+        }
+
+        InputStream in = stored.getInputStream();
+        try {
+            in.skipNBytes(offset);
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+        return in;
+    }
+
+    private SecretKey newFileKey() {
+        try {
+            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+            keyGen.init(256);
+            return keyGen.generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("AES not available", e);
+        }
+    }
+}
@@ -1,17 +1,18 @@
 package com.harsh.chat.service;
 
 import com.harsh.chat.entity.User;
+import com.harsh.chat.exception.RateLimitExceededException;
 import com.harsh.chat.payload.LoginRequest;
 import com.harsh.chat.payload.RegisterRequest;
 import com.harsh.chat.payload.AuthResponse;
 import com.harsh.chat.repositories.UserRepository;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -31,7 +32,8 @@ public class AuthService {
     private final PasswordEncoder passwordEncoder;
     private final JwtService jwtService;
     private final AuthenticationManager authenticationManager;
-    private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationService tokenRevocationService;
+    private final RateLimitPolicyService rateLimitPolicyService;
 
     @Transactional
     public AuthResponse register(RegisterRequest request) {
@@ -64,7 +66,7 @@ public class AuthService {
         log.info("User registered successfully: {}", user.getUsername());
 
         // Generate tokens
-        String accessToken = jwtService.generateToken(user.getUsername());
+        String accessToken = jwtService.generateToken(user);
         String refreshToken = jwtService.generateRefreshToken(user.getUsername());
 
         return AuthResponse.builder()
@@ -79,6 +81,11 @@ public class AuthService {
     public AuthResponse login(LoginRequest request) {
         log.info("Login attempt for user: {}", request.getUsername());
 
+        // Throttle per account before spending a BCrypt slot on it
+        if (!rateLimitPolicyService.tryAcquire("login-account", request.getUsername(), 10, 60)) {
+            throw new RateLimitExceededException("Too many login attempts. Please try again later.");
+        }
+
         // Authenticate
         Authentication authentication = authenticationManager.authenticate(
                 new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
@@ -93,7 +100,7 @@ public class AuthService {
         userRepository.save(user);
 
         // Generate tokens
-        String accessToken = jwtService.generateToken(user.getUsername());
+        String accessToken = jwtService.generateToken(user);
         String refreshToken = jwtService.generateRefreshToken(user.getUsername());
 
         log.info("User logged in successfully: {}", user.getUsername());
@@ -107,20 +114,29 @@ public class AuthService {
     }
 
     public AuthResponse refreshToken(String refreshToken) {
+        Claims claims = jwtService.verifyToken(refreshToken);
+
         // Validate refresh token
-        if (!jwtService.isRefreshToken(refreshToken)) {
+        if (!"refresh".equals(claims.get("type"))) {
             throw new RuntimeException("Invalid refresh token");
         }
 
-        String username = jwtService.extractUsername(refreshToken);
-        UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        String username = claims.getSubject();
+        if (tokenRevocationService.isRevoked(username, JwtService.issuedAtMillis(claims))) {
+            throw new RuntimeException("Invalid refresh token");
+        }
 
-        if (!jwtService.validateToken(refreshToken, userDetails)) {
+        // Refresh is the point where roles and enabled state are re-read from the database
+        // (verifyToken already checked the signature and expiry)
+        User user = userRepository.findByUsername(username)
+                .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
+
+        if (!user.isEnabled()) {
             throw new RuntimeException("Invalid refresh token");
         }
 
         // Generate new access token
-        String newAccessToken = jwtService.generateToken(username);
+        String newAccessToken = jwtService.generateToken(user);
 
         return AuthResponse.builder()
                 .accessToken(newAccessToken)
@@ -130,6 +146,15 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * Revoke every access and refresh token issued to the token's owner
+     */
+    public void logout(String token) {
+        Claims claims = jwtService.verifyToken(token);
+        tokenRevocationService.revokeUser(claims.getSubject());
+        log.info("User logged out: {}", claims.getSubject());
+    }
+
     public User getCurrentUser() {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated() ||
@@ -0,0 +1,125 @@
+package com.harsh.chat.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timers for the message send pipeline, to tell which dependency a slow room is waiting on.
+ * chat.send.stage{stage,outcome} times rate_limit, room_lookup, message_insert, room_update,
+ * cache_write and broadcast (enqueue on the broker channel).
+ * chat.send.latency{room,outcome} runs from the frame arriving on the inbound channel to the
+ * broadcast being enqueued, so it includes time spent waiting for an inbound worker.
+ * Outcomes are success, error and rejected (rate limited). Every timer publishes a percentile
+ * histogram, so Prometheus can compute quantiles across nodes. Only the first
+ * max-tracked-rooms rooms seen get their own room tag and the rest share "other", which
+ * caps the series count however many rooms there are.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ChatMetrics {
+
+    public static final String RECEIVED_AT_HEADER = "chatReceivedAt";
+
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_ERROR = "error";
+    public static final String OUTCOME_REJECTED = "rejected";
+
+    private static final String OTHER_ROOMS = "other";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metrics.chat.max-tracked-rooms:25}")
+    private int maxTrackedRooms;
+
+    private final Set<String> trackedRooms = ConcurrentHashMap.newKeySet();
+
+    private Meter.MeterProvider<Timer> stageTimers;
+    private Meter.MeterProvider<Timer> latencyTimers;
+
+    @PostConstruct
+    public void init() {
+        stageTimers = Timer.builder("chat.send.stage")
+                .description("Time spent in each stage of the message send pipeline")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .withRegistry(meterRegistry);
+        latencyTimers = Timer.builder("chat.send.latency")
+                .description("Message receive to broadcast time")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .withRegistry(meterRegistry);
+
+        log.info("Send pipeline metrics initialized: up to {} rooms tagged individually", maxTrackedRooms);
+    }
+
+    /**
+     * Run one pipeline stage, timed and tagged success or error
+     */
+    public <T> T timeStage(String stage, Supplier<T> action) {
+        long start = System.nanoTime();
+        String outcome = OUTCOME_ERROR;
+        try {
+            T result = action.get();
+            outcome = OUTCOME_SUCCESS;
+            return result;
+        } finally {
+            recordStage(stage, outcome, System.nanoTime() - start);
+        }
+    }
+
+    public void timeStage(String stage, Runnable action) {
+        timeStage(stage, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public void recordStage(String stage, String outcome, long nanos) {
+        stageTimers.withTags("stage", stage, "outcome", outcome).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * End-to-end time of one message; receivedAt is the System.nanoTime() stamped when the
+     * frame arrived, or null if it was not stamped
+     */
+    public void recordSend(String roomId, Long receivedAt, String outcome) {
+        if (receivedAt == null) {
+            return;
+        }
+        latencyTimers.withTags("room", roomTag(roomId), "outcome", outcome)
+                .record(System.nanoTime() - receivedAt, TimeUnit.NANOSECONDS);
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private String roomTag(String roomId) {
+        if (roomId == null) {
+            return OTHER_ROOMS;
+        }
+        if (trackedRooms.contains(roomId)) {
+            return roomId;
+        }
+        synchronized (trackedRooms) {
+            if (trackedRooms.size() < maxTrackedRooms) {
+                trackedRooms.add(roomId);
+                return roomId;
+            }
+        }
+        return OTHER_ROOMS;
+    }
+}
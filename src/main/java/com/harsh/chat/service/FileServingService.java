@@ -0,0 +1,208 @@
+package com.harsh.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes attachment bytes straight from disk (or the hot file cache) to the socket.
+ * On Tomcat's NIO connector the file is handed to the connector's sendfile support,
+ * so bytes never enter the JVM heap; elsewhere (TLS, other containers) it falls back to
+ * FileChannel.transferTo into the response channel. Blobs that are not local files (S3
+ * store with presigning off) are streamed. Files encrypted at rest are decrypted on the way
+ * out, starting at the segment that holds the first requested byte, so a seek into a
+ * video decrypts only what it plays. Handles conditional GET and single byte ranges
+ * itself, since it bypasses Spring's Resource message converter.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FileServingService {
+
+    // Tomcat request attributes (org.apache.catalina.Globals)
+    private static final String SENDFILE_SUPPORTED_ATTR = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME_ATTR = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_FILE_START_ATTR = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FILE_END_ATTR = "org.apache.tomcat.sendfile.end";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${file.zero-copy:true}")
+    private boolean enabled;
+
+    private Counter sendfileBytes;
+    private Counter transferBytes;
+    private Counter memoryBytes;
+    private Counter streamBytes;
+    private Counter decryptBytes;
+
+    @PostConstruct
+    public void init() {
+        sendfileBytes = Counter.builder("attachments.served.bytes")
+                .description("Attachment bytes served, by serving path")
+                .tag("mode", "sendfile")
+                .register(meterRegistry);
+        transferBytes = Counter.builder("attachments.served.bytes")
+                .description("Attachment bytes served, by serving path")
+                .tag("mode", "transfer")
+                .register(meterRegistry);
+        memoryBytes = Counter.builder("attachments.served.bytes")
+                .description("Attachment bytes served, by serving path")
+                .tag("mode", "memory")
+                .register(meterRegistry);
+        streamBytes = Counter.builder("attachments.served.bytes")
+                .description("Attachment bytes served, by serving path")
+                .tag("mode", "stream")
+                .register(meterRegistry);
+        decryptBytes = Counter.builder("attachments.served.bytes")
+                .description("Attachment bytes served, by serving path")
+                .tag("mode", "decrypt")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void serve(FileStorageService.ServedFile served, String contentType, String contentDisposition,
+                      CacheControl cacheControl, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        Resource resource = served.resource();
+        HotFileCache.CachedResource cached = resource instanceof HotFileCache.CachedResource cachedResource
+                ? cachedResource : null;
+        File file = cached == null && resource.isFile() ? resource.getFile() : null;
+        long length = file != null ? file.length() : resource.contentLength();
+        long lastModified = resource.lastModified();
+
+        // Caching headers go on 304s too, so revalidated copies keep their max-age
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        // Sets 304 plus ETag / Last-Modified when the client's copy is current
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        boolean notModified = served.eTag() != null
+                ? webRequest.checkNotModified(served.eTag(), lastModified)
+                : webRequest.checkNotModified(lastModified);
+        if (notModified) {
+            return;
+        }
+
+        response.setContentType(contentType);
+
+        long start = 0;
+        long end = length - 1;
+
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader != null && length > 0 && rangeApplies(request, served.eTag())) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(rangeHeader);
+            } catch (IllegalArgumentException e) {
+                ranges = List.of();
+            }
+
+            // Multipart ranges are rare for media; answering them with the full body is allowed
+            if (ranges.size() == 1) {
+                // HttpRange does not check the start against the length, so bytes=N- with
+                // N >= length would come back as an empty 206
+                start = ranges.get(0).getRangeStart(length);
+                end = ranges.get(0).getRangeEnd(length);
+                if (start >= length || start > end) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = Math.max(0, end - start + 1);
+        response.setContentLengthLong(count);
+
+        if ("HEAD".equals(request.getMethod()) || count == 0) {
+            return;
+        }
+
+        if (cached != null) {
+            // Hot small file: already in memory, no disk access at all
+            response.getOutputStream().write(cached.getByteArray(), (int) start, (int) count);
+            memoryBytes.increment(count);
+            return;
+        }
+
+        if (resource instanceof AttachmentEncryptionService.EncryptedResource encrypted) {
+            // Encrypted at rest: decrypt from the segment holding start, never the skipped prefix
+            try (InputStream in = encrypted.getInputStream(start)) {
+                long copied = StreamUtils.copyRange(in, response.getOutputStream(), 0, count - 1);
+                decryptBytes.increment(copied);
+            }
+            return;
+        }
+
+        if (file == null) {
+            // Remote blob: one pass through a heap buffer
+            try (InputStream in = resource.getInputStream()) {
+                long copied = StreamUtils.copyRange(in, response.getOutputStream(), start, end);
+                streamBytes.increment(copied);
+            }
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED_ATTR))) {
+            // The connector streams the file after the servlet returns
+            request.setAttribute(SENDFILE_FILENAME_ATTR, file.getCanonicalPath());
+            request.setAttribute(SENDFILE_FILE_START_ATTR, start);
+            request.setAttribute(SENDFILE_FILE_END_ATTR, end + 1);
+            sendfileBytes.increment(count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long remaining = count;
+            while (remaining > 0) {
+                long written = channel.transferTo(position, remaining, out);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+                remaining -= written;
+            }
+            transferBytes.increment(count - remaining);
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    /**
+     * If-Range: only honour the range if the client's strong validator still matches
+     */
+    private boolean rangeApplies(HttpServletRequest request, String eTag) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        return ifRange == null || (eTag != null && !eTag.startsWith("W/") && ifRange.equals(eTag));
+    }
+}
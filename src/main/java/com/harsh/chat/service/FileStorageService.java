@@ -1,37 +1,73 @@
 package com.harsh.chat.service;
 
 import com.harsh.chat.entity.Attachment;
+import com.harsh.chat.entity.AttachmentBlob;
 import com.harsh.chat.repositories.AttachmentRepository;
+import com.harsh.chat.storage.BlobStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import net.coobird.thumbnailator.Thumbnails;
 import org.apache.tika.Tika;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.Resource;
-import org.springframework.core.io.UrlResource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.annotation.PostConstruct;
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.MalformedURLException;
+import java.io.OutputStream;
+import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class FileStorageService {
 
+    // Tika marks the stream and sniffs up to 64KB of the head before resetting
+    private static final int SNIFF_BUFFER_SIZE = 64 * 1024;
+
+    // <sha256>, thumb_<sha256> or <sha256>_<size>: names derived from content
+    private static final Pattern CONTENT_ADDRESSED_NAME = Pattern.compile("(thumb_)?[0-9a-f]{64}(_\\d+)?");
+
+    // Small files requested in bursts when a room opens
+    private static final Set<String> HOT_CACHE_CATEGORIES = Set.of("thumbnails", "images");
+
+    // An upload of content whose blob is still being stored or deleted waits this long for it
+    private static final long BLOB_WAIT_MS = 30_000;
+    private static final long BLOB_POLL_MS = 50;
+
+    // A blob still pending after this long belongs to an upload that died mid-put
+    private static final long PENDING_STALE_MS = 10 * 60_000;
+
     private final AttachmentRepository attachmentRepository;
+    private final MongoTemplate mongoTemplate;
+    private final MediaProcessingService mediaProcessingService;
+    private final HotFileCache hotFileCache;
+    private final BlobStore blobStore;
+    private final AttachmentEncryptionService attachmentEncryption;
     private final Tika tika = new Tika();
 
     @Value("${file.upload-dir:./uploads}")
@@ -43,9 +79,6 @@ public class FileStorageService {
     @Value("${file.allowed-types:}")
     private String[] allowedTypesArray;
 
-    @Value("${file.thumbnail-size:200}")
-    private int thumbnailSize;
-
     private Path fileStorageLocation;
     private Set<String> allowedTypes;
 
@@ -55,13 +88,8 @@ public class FileStorageService {
             fileStorageLocation = Paths.get(uploadDir).toAbsolutePath().normalize();
             Files.createDirectories(fileStorageLocation);
 
-            // Create subdirectories
-            Files.createDirectories(fileStorageLocation.resolve("images"));
-            Files.createDirectories(fileStorageLocation.resolve("thumbnails"));
-            Files.createDirectories(fileStorageLocation.resolve("videos"));
-            Files.createDirectories(fileStorageLocation.resolve("audio"));
-            Files.createDirectories(fileStorageLocation.resolve("documents"));
-            Files.createDirectories(fileStorageLocation.resolve("other"));
+            // Uploads are staged locally whatever the blob store
+            Files.createDirectories(fileStorageLocation.resolve("tmp"));
 
             // Initialize allowed types with hardcoded defaults if array is empty
             allowedTypes = new HashSet<>();
@@ -95,104 +123,198 @@ public class FileStorageService {
     }
 
     /**
-     * Store a file and return attachment entity
+     * Store a file and return attachment entity.
+     * Content is addressed by SHA-256: a repeat upload only bumps the blob's reference count
+     * and drops its temp copy, without writing the file or a thumbnail again.
+     * Thumbnails of new content are generated in the background (thumbnailPending).
+     * With encryption at rest the copy to the temp file is encrypted as it is written.
      */
     public Attachment storeFile(MultipartFile file, String uploadedBy, String roomId) {
+        Path tempFile = null;
         try {
-            // Validate file
+            // Validate size before touching the stream
             validateFile(file);
 
-            // Generate unique filename
             String originalFileName = file.getOriginalFilename();
-            String fileExtension = getFileExtension(originalFileName);
-            String uniqueFileName = UUID.randomUUID().toString() + fileExtension;
+            tempFile = fileStorageLocation.resolve("tmp").resolve(UUID.randomUUID().toString());
+
+            String mimeType;
+            String contentHash;
+
+            // Single pass: Tika sniffs the buffered head, the digest sees every byte once while copying
+            MessageDigest digest = newSha256();
+            try (InputStream in = new BufferedInputStream(
+                    new DigestInputStream(file.getInputStream(), digest), SNIFF_BUFFER_SIZE)) {
 
-            // Detect file type
-            String mimeType = detectMimeType(file);
-            log.info("Detected MIME type: {} for file: {}", mimeType, originalFileName);
+                mimeType = tika.detect(in);
+                log.info("Detected MIME type: {} for file: {}", mimeType, originalFileName);
+                validateMimeType(mimeType);
+
+                try (OutputStream out = attachmentEncryption.encryptingStream(Files.newOutputStream(tempFile))) {
+                    in.transferTo(out);
+                }
+                contentHash = HexFormat.of().formatHex(digest.digest());
+            }
 
-            String fileCategory = getFileCategory(mimeType);
+            return registerAttachment(tempFile, originalFileName, mimeType, contentHash, file.getSize(), uploadedBy, roomId);
 
-            // Determine subdirectory
-            Path targetLocation = fileStorageLocation.resolve(fileCategory).resolve(uniqueFileName);
+        } catch (IOException e) {
+            log.error("Could not store file: {}", e.getMessage());
+            throw new RuntimeException("Could not store file: " + e.getMessage());
+        } finally {
+            deleteQuietly(tempFile);
+        }
+    }
 
-            // Copy file to target location
-            Files.copy(file.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Store a file already assembled on disk (a completed chunked upload).
+     * The file is read once to sniff its type and hash it; a client-supplied hash must match.
+     * New content is handed to the blob store (a rename on the filesystem store); whatever
+     * is left of the file afterwards is the caller's to delete. With encryption at rest the
+     * same read writes the encrypted copy that is stored instead.
+     */
+    public Attachment storeAssembledFile(Path assembledFile, String originalFileName, String expectedHash,
+                                         String uploadedBy, String roomId) {
+        Path encryptedFile = null;
+        try {
+            long size = Files.size(assembledFile);
+            if (size == 0) {
+                throw new IllegalArgumentException("File is empty");
+            }
+            if (size > maxFileSize) {
+                throw new IllegalArgumentException("File size exceeds maximum allowed size: " +
+                        (maxFileSize / 1024 / 1024) + "MB");
+            }
 
-            // Generate thumbnail for images
-            String thumbnailPath = null;
-            Integer width = null;
-            Integer height = null;
+            String mimeType;
+            String contentHash;
 
-            if (fileCategory.equals("images")) {
-                thumbnailPath = generateThumbnail(targetLocation, uniqueFileName);
+            Path storedFile = assembledFile;
+            OutputStream sink = OutputStream.nullOutputStream();
+            if (attachmentEncryption.isEnabled()) {
+                encryptedFile = getTempDirectory().resolve(UUID.randomUUID().toString());
+                storedFile = encryptedFile;
+                sink = attachmentEncryption.encryptingStream(Files.newOutputStream(encryptedFile));
             }
 
-            // Build file URL (for web access)
-            String fileUrl = "/api/v1/attachments/view/" + fileCategory + "/" + uniqueFileName;
-            String thumbnailUrl = thumbnailPath != null ?
-                    "/api/v1/attachments/view/thumbnails/" + Paths.get(thumbnailPath).getFileName().toString() : null;
-
-            // Create attachment record
-            Attachment attachment = Attachment.builder()
-                    .fileName(originalFileName)
-                    .fileType(mimeType)
-                    .fileSize(file.getSize())
-                    .filePath(targetLocation.toString())
-                    .thumbnailPath(thumbnailPath)
-                    .fileUrl(fileUrl)
-                    .thumbnailUrl(thumbnailUrl)
-                    .uploadedBy(uploadedBy)
-                    .roomId(roomId)
-                    .uploadedAt(LocalDateTime.now())
-                    .build();
-
-            Attachment savedAttachment = attachmentRepository.save(attachment);
-            log.info("File stored successfully: {} (ID: {})", originalFileName, savedAttachment.getId());
-
-            return savedAttachment;
+            MessageDigest digest = newSha256();
+            try (OutputStream out = sink;
+                 InputStream in = new BufferedInputStream(
+                         new DigestInputStream(Files.newInputStream(assembledFile), digest), SNIFF_BUFFER_SIZE)) {
+
+                mimeType = tika.detect(in);
+                log.info("Detected MIME type: {} for file: {}", mimeType, originalFileName);
+                validateMimeType(mimeType);
+
+                in.transferTo(out);
+                contentHash = HexFormat.of().formatHex(digest.digest());
+            }
+
+            if (expectedHash != null && !expectedHash.equalsIgnoreCase(contentHash)) {
+                throw new IllegalArgumentException("Content hash mismatch: expected " + expectedHash +
+                        " but received " + contentHash);
+            }
+
+            return registerAttachment(storedFile, originalFileName, mimeType, contentHash, size, uploadedBy, roomId);
 
         } catch (IOException e) {
             log.error("Could not store file: {}", e.getMessage());
             throw new RuntimeException("Could not store file: " + e.getMessage());
+        } finally {
+            deleteQuietly(encryptedFile);
         }
     }
 
+    public Path getTempDirectory() {
+        return fileStorageLocation.resolve("tmp");
+    }
+
     /**
-     * Load file as resource
+     * Load file as resource (decrypting, if the file is encrypted at rest)
      */
     public Resource loadFileAsResource(String fileName, String category) {
-        try {
-            Path filePath = fileStorageLocation.resolve(category).resolve(fileName).normalize();
-            Resource resource = new UrlResource(filePath.toUri());
+        Resource resource = blobStore.getResource(storageKey(category, fileName));
 
-            if (resource.exists()) {
-                return resource;
-            } else {
-                throw new RuntimeException("File not found: " + fileName);
+        if (resource.exists()) {
+            try {
+                return attachmentEncryption.decrypting(resource);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not read file: " + fileName, e);
             }
-        } catch (MalformedURLException e) {
-            throw new RuntimeException("File not found: " + fileName, e);
+        } else {
+            throw new RuntimeException("File not found: " + fileName);
+        }
+    }
+
+    /**
+     * Resolve a file for HTTP serving, with its validator and cacheability.
+     * A size (longest side in px) picks the smallest variant at least that large, falling back
+     * to the original. Content-addressed files never change, so they get a strong ETag from
+     * their name and can be cached forever; legacy UUID-named files get a weak ETag.
+     */
+    public ServedFile serveFile(String fileName, String category, Integer size) {
+        ResolvedFile resolved = resolve(fileName, category, size);
+
+        Resource resource = null;
+        if (HOT_CACHE_CATEGORIES.contains(resolved.category())) {
+            resource = hotFileCache.get(storageKey(resolved.category(), resolved.name()), () -> recordedSize(resolved));
+        }
+        if (resource == null) {
+            resource = loadFileAsResource(resolved.name(), resolved.category());
+        }
+        String baseName = stripExtension(resolved.name());
+
+        if (CONTENT_ADDRESSED_NAME.matcher(baseName).matches()) {
+            return new ServedFile(resource, "\"" + baseName + "\"", resolved.stable());
         }
+
+        try {
+            return new ServedFile(resource, "W/\"" + resource.contentLength() + "-" + resource.lastModified() + "\"", false);
+        } catch (IOException e) {
+            return new ServedFile(resource, null, false);
+        }
+    }
+
+    public record ServedFile(Resource resource, String eTag, boolean immutable) {
+    }
+
+    /**
+     * Direct download URL from the blob store (e.g. presigned S3 GET), so the bytes bypass
+     * this JVM. Returns null when the store cannot hand out such URLs, and always with
+     * encryption at rest: the client would get ciphertext.
+     */
+    public URI directDownloadUrl(String fileName, String category, Integer size, boolean inline) {
+        if (attachmentEncryption.isEnabled()) {
+            return null;
+        }
+
+        ResolvedFile resolved = resolve(fileName, category, size);
+        boolean immutable = resolved.stable()
+                && CONTENT_ADDRESSED_NAME.matcher(stripExtension(resolved.name())).matches();
+
+        String disposition = (inline ? "inline" : "attachment") + "; filename=\"" + resolved.name() + "\"";
+        String cacheControl = (inline ? "public, " : "private, ")
+                + (immutable ? "max-age=31536000, immutable" : "no-cache");
+
+        return blobStore.presignedUrl(storageKey(resolved.category(), resolved.name()), disposition, cacheControl)
+                .orElse(null);
     }
 
     /**
-     * Delete file
+     * Delete an attachment; its file and thumbnail go with the last reference to the blob
      */
     public boolean deleteFile(String attachmentId) {
         try {
             Attachment attachment = attachmentRepository.findById(attachmentId)
                     .orElseThrow(() -> new RuntimeException("Attachment not found"));
 
-            Path filePath = Paths.get(attachment.getFilePath());
-            Files.deleteIfExists(filePath);
+            attachmentRepository.delete(attachment);
 
-            if (attachment.getThumbnailPath() != null) {
-                Path thumbnailPath = Paths.get(attachment.getThumbnailPath());
-                Files.deleteIfExists(thumbnailPath);
+            if (attachment.getContentHash() == null || !releaseBlob(attachment.getContentHash())) {
+                // Stored before content addressing: the files belong to this attachment alone
+                deleteFiles(attachment.getFilePath(), attachment.getThumbnailPath());
             }
 
-            attachmentRepository.delete(attachment);
             log.info("File deleted: {}", attachmentId);
 
             return true;
@@ -202,6 +324,316 @@ public class FileStorageService {
         }
     }
 
+    // ============== BLOB REFERENCE COUNTING ==============
+
+    /**
+     * Point a new attachment record at the blob for this content, creating the blob
+     * (and moving the temp file into place) if the content is new
+     */
+    private Attachment registerAttachment(Path tempFile, String originalFileName, String mimeType, String contentHash,
+                                          long size, String uploadedBy, String roomId) throws IOException {
+        AttachmentBlob blob = acquireBlob(contentHash);
+        if (blob != null) {
+            log.info("Duplicate upload of {} matched blob {} (refs: {})", originalFileName, contentHash, blob.getRefCount());
+        } else {
+            blob = createBlob(tempFile, contentHash, mimeType, getFileExtension(originalFileName), size);
+        }
+
+        // Create attachment record
+        Attachment attachment = Attachment.builder()
+                .fileName(originalFileName)
+                .fileType(blob.getFileType())
+                .fileSize(blob.getFileSize())
+                .filePath(blob.getFilePath())
+                .thumbnailPath(blob.getThumbnailPath())
+                .fileUrl(blob.getFileUrl())
+                .thumbnailUrl(blob.getThumbnailUrl())
+                .thumbnailPending(blob.isThumbnailPending())
+                .variantUrls(blob.getVariantUrls())
+                .width(blob.getWidth())
+                .height(blob.getHeight())
+                .contentHash(contentHash)
+                .uploadedBy(uploadedBy)
+                .roomId(roomId)
+                .uploadedAt(LocalDateTime.now())
+                .build();
+
+        Attachment savedAttachment = attachmentRepository.save(attachment);
+        if (savedAttachment.isThumbnailPending()) {
+            adoptFinishedDerivatives(savedAttachment);
+        }
+        log.info("File stored successfully: {} (ID: {})", originalFileName, savedAttachment.getId());
+
+        return savedAttachment;
+    }
+
+    /**
+     * The media pipeline marks the blob done before it updates the blob's attachments, so an
+     * attachment saved after that update would stay pending forever. Re-read the blob and
+     * copy a finished result over, only while the attachment is still marked pending.
+     */
+    private void adoptFinishedDerivatives(Attachment attachment) {
+        AttachmentBlob blob = mongoTemplate.findById(attachment.getContentHash(), AttachmentBlob.class);
+        if (blob == null || blob.isThumbnailPending()) {
+            return;
+        }
+
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(attachment.getId()).and("thumbnailPending").is(true)),
+                new Update().set("thumbnailPath", blob.getThumbnailPath())
+                        .set("thumbnailUrl", blob.getThumbnailUrl())
+                        .set("thumbnailPending", false)
+                        .set("variantUrls", blob.getVariantUrls())
+                        .set("width", blob.getWidth())
+                        .set("height", blob.getHeight()),
+                Attachment.class);
+
+        attachment.setThumbnailPath(blob.getThumbnailPath());
+        attachment.setThumbnailUrl(blob.getThumbnailUrl());
+        attachment.setThumbnailPending(false);
+        attachment.setVariantUrls(blob.getVariantUrls());
+        attachment.setWidth(blob.getWidth());
+        attachment.setHeight(blob.getHeight());
+    }
+
+    /**
+     * Add a reference to an existing, stored blob, or return null if there is none (or it is
+     * still being stored, or being deleted)
+     */
+    private AttachmentBlob acquireBlob(String hash) {
+        return mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(hash).and("pending").ne(true).and("deleting").ne(true)),
+                new Update().inc("refCount", 1),
+                FindAndModifyOptions.options().returnNew(true),
+                AttachmentBlob.class);
+    }
+
+    /**
+     * Register a new blob with one reference and move the upload into content-addressed
+     * storage. The record goes in first, marked pending: holding it means no delete of this
+     * content is in progress and none can start, so the put cannot race a delete of the same
+     * path, while duplicates wait instead of pointing at a file that is not there yet.
+     * The flag is cleared once the file is stored; if storing fails the record is removed.
+     */
+    private AttachmentBlob createBlob(Path tempFile, String hash, String mimeType, String extension, long size)
+            throws IOException {
+        String fileCategory = getFileCategory(mimeType);
+        String blobFileName = hash + extension;
+        String key = storageKey(fileCategory, blobFileName);
+
+        // Build file URL (for web access); thumbnails follow from the media pipeline
+        String fileUrl = "/api/v1/attachments/view/" + fileCategory + "/" + blobFileName;
+        boolean thumbnailPending = mediaProcessingService.needsDerivatives(mimeType);
+
+        AttachmentBlob blob = AttachmentBlob.builder()
+                .hash(hash)
+                .fileType(mimeType)
+                .fileSize(size)
+                .filePath(key)
+                .fileUrl(fileUrl)
+                .thumbnailPending(thumbnailPending)
+                .refCount(1)
+                .pending(true)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOB_WAIT_MS);
+        AttachmentBlob saved = null;
+        while (saved == null) {
+            try {
+                saved = mongoTemplate.insert(blob);
+            } catch (DuplicateKeyException e) {
+                // Same content uploaded concurrently: share the winner's blob
+                AttachmentBlob existing = acquireBlob(hash);
+                if (existing != null) {
+                    return existing;
+                }
+                // Pending or a tombstone: wait for the other upload's put, or for the delete
+                if (System.nanoTime() > deadline) {
+                    if (!removeStalePending(hash)) {
+                        throw new IOException("Blob " + hash + " is still being stored or deleted, try again");
+                    }
+                    deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BLOB_WAIT_MS);
+                }
+                try {
+                    Thread.sleep(BLOB_POLL_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting for blob " + hash, ie);
+                }
+            }
+        }
+
+        try {
+            blobStore.put(key, tempFile, mimeType);
+        } catch (IOException | RuntimeException e) {
+            // Nobody else can hold a reference to a pending blob, so it goes away entirely
+            try {
+                mongoTemplate.remove(
+                        Query.query(Criteria.where("_id").is(hash).and("pending").is(true)),
+                        AttachmentBlob.class);
+            } catch (RuntimeException removeError) {
+                e.addSuppressed(removeError);
+            }
+            throw e;
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(hash)),
+                new Update().set("pending", false), AttachmentBlob.class);
+        saved.setPending(false);
+
+        if (thumbnailPending) {
+            mediaProcessingService.enqueue(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Remove a pending record whose upload evidently died before finishing its put
+     */
+    private boolean removeStalePending(String hash) {
+        LocalDateTime staleBefore = LocalDateTime.now().minus(Duration.ofMillis(PENDING_STALE_MS));
+        long removed = mongoTemplate.remove(
+                Query.query(Criteria.where("_id").is(hash).and("pending").is(true).and("createdAt").lt(staleBefore)),
+                AttachmentBlob.class).getDeletedCount();
+        if (removed > 0) {
+            log.warn("Removed blob {} left pending by an interrupted upload", hash);
+        }
+        return removed > 0;
+    }
+
+    /**
+     * Drop one reference; the last one removes the blob's files and then its record.
+     * Returns false if the hash has no blob record.
+     */
+    private boolean releaseBlob(String hash) throws IOException {
+        AttachmentBlob blob = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("_id").is(hash)),
+                new Update().inc("refCount", -1),
+                FindAndModifyOptions.options().returnNew(true),
+                AttachmentBlob.class);
+
+        if (blob == null) {
+            return false;
+        }
+
+        if (blob.getRefCount() <= 0) {
+            // Tombstone it, unless an upload re-acquired it in the meantime; from here on
+            // acquireBlob skips it and createBlob waits for the record to go
+            AttachmentBlob doomed = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("_id").is(hash).and("refCount").lte(0).and("deleting").ne(true)),
+                    new Update().set("deleting", true),
+                    FindAndModifyOptions.options().returnNew(true),
+                    AttachmentBlob.class);
+
+            if (doomed != null) {
+                try {
+                    deleteFiles(doomed.getFilePath(), doomed.getThumbnailPath());
+                    if (doomed.getVariantPaths() != null) {
+                        for (String variantPath : doomed.getVariantPaths().values()) {
+                            deleteStored(variantPath);
+                        }
+                    }
+                } finally {
+                    // Even if a file could not be deleted, so the content can be uploaded again
+                    mongoTemplate.remove(
+                            Query.query(Criteria.where("_id").is(hash).and("deleting").is(true)),
+                            AttachmentBlob.class);
+                }
+                log.info("Blob {} removed with its last reference", hash);
+            }
+        }
+        return true;
+    }
+
+    private String closestVariant(AttachmentBlob blob, int size) {
+        if (blob.getVariantPaths() == null) {
+            return null;
+        }
+
+        String bestPath = null;
+        int bestSize = Integer.MAX_VALUE;
+        for (Map.Entry<String, String> variant : blob.getVariantPaths().entrySet()) {
+            int variantSize = Integer.parseInt(variant.getKey());
+            if (variantSize >= size && variantSize < bestSize) {
+                bestSize = variantSize;
+                bestPath = variant.getValue();
+            }
+        }
+        return bestPath;
+    }
+
+    private String stripExtension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot == -1 ? fileName : fileName.substring(0, dot);
+    }
+
+    /**
+     * The name actually served: a ?size request for an image maps to its closest variant
+     */
+    private ResolvedFile resolve(String fileName, String category, Integer size) {
+        if (size != null && size > 0 && !category.equals("thumbnails")) {
+            AttachmentBlob blob = mongoTemplate.findById(stripExtension(fileName), AttachmentBlob.class);
+            // Until derivatives exist the same URL may later resolve to a variant
+            boolean stable = blob != null && !blob.isThumbnailPending();
+
+            String variantPath = blob != null ? closestVariant(blob, size) : null;
+            if (variantPath != null) {
+                return new ResolvedFile(Paths.get(variantPath).getFileName().toString(), "thumbnails", stable);
+            }
+            return new ResolvedFile(fileName, category, stable);
+        }
+        return new ResolvedFile(fileName, category, true);
+    }
+
+    private record ResolvedFile(String name, String category, boolean stable) {
+    }
+
+    /**
+     * Plaintext size of a content-addressed original from its blob record, or -1 when there is
+     * none (derivatives and legacy files)
+     */
+    private long recordedSize(ResolvedFile resolved) {
+        String baseName = stripExtension(resolved.name());
+        if (resolved.category().equals("thumbnails") || !CONTENT_ADDRESSED_NAME.matcher(baseName).matches()) {
+            return -1;
+        }
+        AttachmentBlob blob = mongoTemplate.findById(baseName, AttachmentBlob.class);
+        return blob != null ? blob.getFileSize() : -1;
+    }
+
+    private String storageKey(String category, String fileName) {
+        if (fileName.contains("/") || fileName.contains("\\") || fileName.contains("..")) {
+            throw new RuntimeException("File not found: " + fileName);
+        }
+        return category + "/" + fileName;
+    }
+
+    private void deleteFiles(String filePath, String thumbnailPath) throws IOException {
+        deleteStored(filePath);
+
+        if (thumbnailPath != null) {
+            deleteStored(thumbnailPath);
+        }
+    }
+
+    private void deleteStored(String path) throws IOException {
+        String key = BlobStore.keyOf(path);
+        blobStore.delete(key);
+        hotFileCache.invalidate(key);
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Could not delete temp file {}: {}", path, e.getMessage());
+        }
+    }
+
     // ============== PRIVATE HELPER METHODS ==============
 
     private void validateFile(MultipartFile file) {
@@ -213,42 +645,40 @@ public class FileStorageService {
             throw new IllegalArgumentException("File size exceeds maximum allowed size: " +
                     (maxFileSize / 1024 / 1024) + "MB");
         }
+    }
 
-        try {
-            String mimeType = detectMimeType(file);
-            log.info("Validating file type: {}", mimeType);
-
-            // Allow common image types even if not in allowed list
-            boolean isAllowed = false;
+    private void validateMimeType(String mimeType) {
+        log.info("Validating file type: {}", mimeType);
 
-            // Check against allowed types
-            if (allowedTypes.contains(mimeType)) {
-                isAllowed = true;
-            }
+        // Allow common image types even if not in allowed list
+        boolean isAllowed = false;
 
-            // Additional common type checks
-            if (mimeType.startsWith("image/") ||
-                    mimeType.startsWith("video/") ||
-                    mimeType.startsWith("audio/") ||
-                    mimeType.equals("application/pdf") ||
-                    mimeType.contains("document") ||
-                    mimeType.contains("spreadsheet") ||
-                    mimeType.contains("presentation")) {
-                isAllowed = true;
-            }
+        // Check against allowed types
+        if (allowedTypes.contains(mimeType)) {
+            isAllowed = true;
+        }
 
-            if (!isAllowed) {
-                throw new IllegalArgumentException("File type not allowed: " + mimeType);
-            }
+        // Additional common type checks
+        if (mimeType.startsWith("image/") ||
+                mimeType.startsWith("video/") ||
+                mimeType.startsWith("audio/") ||
+                mimeType.equals("application/pdf") ||
+                mimeType.contains("document") ||
+                mimeType.contains("spreadsheet") ||
+                mimeType.contains("presentation")) {
+            isAllowed = true;
+        }
 
-        } catch (IOException e) {
-            throw new RuntimeException("Could not detect file type", e);
+        if (!isAllowed) {
+            throw new IllegalArgumentException("File type not allowed: " + mimeType);
         }
     }
 
-    private String detectMimeType(MultipartFile file) throws IOException {
-        try (InputStream is = file.getInputStream()) {
-            return tika.detect(is);
+    private MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
     }
 
@@ -278,21 +708,6 @@ public class FileStorageService {
         }
     }
 
-    private String generateThumbnail(Path originalPath, String fileName) throws IOException {
-        Path thumbnailDir = fileStorageLocation.resolve("thumbnails");
-        Files.createDirectories(thumbnailDir);
-
-        String thumbnailName = "thumb_" + fileName.replace(getFileExtension(fileName), ".jpg");
-        Path thumbnailPath = thumbnailDir.resolve(thumbnailName);
-
-        Thumbnails.of(originalPath.toFile())
-                .size(thumbnailSize, thumbnailSize)
-                .outputFormat("jpg")
-                .toFile(thumbnailPath.toFile());
-
-        return thumbnailPath.toString();
-    }
-
     /**
      * Get file size in human readable format
      */
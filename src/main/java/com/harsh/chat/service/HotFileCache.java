@@ -0,0 +1,148 @@
+package com.harsh.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harsh.chat.storage.BlobStore;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.function.LongSupplier;
+
+/**
+ * Byte-bounded in-memory cache of small, hot files (thumbnails, variants, small images).
+ * Eviction is Caffeine's W-TinyLFU, weighted by file size, so a room-open burst of
+ * thumbnails is served from memory while one-off large files never displace them.
+ * Keyed by blob store key; FileStorageService invalidates entries when files are deleted.
+ * With an S3 store this also saves a round trip to the bucket per hit. Files encrypted at
+ * rest are cached decrypted (memory is not "at rest"), so hits skip decryption too.
+ * Metrics: cache.gets{cache=attachments.hot,result=hit|miss}, cache.evictions, cache.size.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HotFileCache {
+
+    private final MeterRegistry meterRegistry;
+    private final BlobStore blobStore;
+    private final AttachmentEncryptionService attachmentEncryption;
+
+    @Value("${file.hot-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${file.hot-cache.max-entry-bytes:524288}")
+    private long maxEntryBytes;
+
+    private Cache<String, CachedResource> cache;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String path, CachedResource resource) -> resource.getByteArray().length)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "attachments.hot");
+
+        log.info("Hot file cache initialized: {} bytes, entries up to {} bytes", maxBytes, maxEntryBytes);
+    }
+
+    /**
+     * Return the file's bytes from memory, loading them if the file is small enough.
+     * Returns null for missing or oversized files, which should be served from disk.
+     * recordedSize is only asked on a miss: the plaintext size from the file's database
+     * record, or -1 if there is none. A known size settles an oversized file without asking
+     * the store (a HEAD request on S3); without one the store is asked for the length.
+     */
+    public CachedResource get(String key, LongSupplier recordedSize) {
+        CachedResource cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        long size = recordedSize.getAsLong();
+        if (size > maxEntryBytes) {
+            return null;
+        }
+
+        Resource resource;
+        try {
+            resource = attachmentEncryption.decrypting(blobStore.getResource(key));
+            if (size < 0 && resource.contentLength() > maxEntryBytes) {
+                return null;
+            }
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            return cache.get(key, k -> load(resource));
+        } catch (UncheckedIOException e) {
+            log.debug("Could not cache {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public void invalidate(String key) {
+        if (key != null) {
+            cache.invalidate(key);
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private CachedResource load(Resource resource) {
+        try (InputStream in = resource.getInputStream()) {
+            long lastModified = resource.lastModified();
+            byte[] content = in.readAllBytes();
+            return new CachedResource(content, resource.getFilename(), lastModified);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * In-memory copy of a file that still reports the file's name and modification time
+     */
+    public static class CachedResource extends ByteArrayResource {
+
+        private final String filename;
+        private final long lastModified;
+
+        CachedResource(byte[] content, String filename, long lastModified) {
+            super(content, filename);
+            this.filename = filename;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public String getFilename() {
+            return filename;
+        }
+
+        @Override
+        public long lastModified() {
+            return lastModified;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
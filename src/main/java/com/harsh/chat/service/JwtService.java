@@ -1,24 +1,30 @@
 package com.harsh.chat.service;
 
+import com.harsh.chat.entity.User;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
-import io.jsonwebtoken.security.Keys;
+import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
 
-import java.security.Key;
 import java.util.Date;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.function.Function;
 
 @Service
+@RequiredArgsConstructor
 public class JwtService {
 
-    @Value("${jwt.secret:mySuperSecretKeyForJWTGenerationThatShouldBeAtLeast32BytesLong}")
-    private String secretKey;
+    public static final String ROLES_CLAIM = "roles";
+    public static final String ENABLED_CLAIM = "enabled";
+    // iat has second precision; revocation compares against this instead
+    public static final String ISSUED_AT_MS_CLAIM = "iat_ms";
+
+    private final JwtTokenVerifier tokenVerifier;
 
     @Value("${jwt.expiration:86400000}")
     private long jwtExpiration;
@@ -39,21 +45,28 @@ public class JwtService {
         return claimsResolver.apply(claims);
     }
 
+    /**
+     * Verify the token once and return all claims (signature and expiry checked)
+     */
+    public Claims verifyToken(String token) {
+        return tokenVerifier.verify(token);
+    }
+
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSignKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return tokenVerifier.verify(token);
     }
 
-    private Boolean isTokenExpired(String token) {
-        return extractExpiration(token).before(new Date());
+    private Boolean isTokenExpired(Claims claims) {
+        return claims.getExpiration().before(new Date());
     }
 
     public Boolean validateToken(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = extractAllClaims(token);
+        return validateClaims(claims, userDetails);
+    }
+
+    public Boolean validateClaims(Claims claims, UserDetails userDetails) {
+        return (claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims));
     }
 
     public String generateToken(String username) {
@@ -62,6 +75,17 @@ public class JwtService {
         return createToken(claims, username, jwtExpiration);
     }
 
+    /**
+     * Access token carrying roles and enabled state, so requests can be authenticated without a user lookup
+     */
+    public String generateToken(User user) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("type", "access");
+        claims.put(ROLES_CLAIM, new ArrayList<>(user.getRoles()));
+        claims.put(ENABLED_CLAIM, user.isEnabled());
+        return createToken(claims, user.getUsername(), jwtExpiration);
+    }
+
     public String generateRefreshToken(String username) {
         Map<String, Object> claims = new HashMap<>();
         claims.put("type", "refresh");
@@ -69,18 +93,27 @@ public class JwtService {
     }
 
     private String createToken(Map<String, Object> claims, String subject, long expiration) {
+        long now = System.currentTimeMillis();
+        claims.put(ISSUED_AT_MS_CLAIM, now);
         return Jwts.builder()
                 .setClaims(claims)
                 .setSubject(subject)
-                .setIssuedAt(new Date(System.currentTimeMillis()))
-                .setExpiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getSignKey(), SignatureAlgorithm.HS256)
+                .setIssuedAt(new Date(now))
+                .setExpiration(new Date(now + expiration))
+                .signWith(tokenVerifier.getSigningKey(), SignatureAlgorithm.HS256)
                 .compact();
     }
 
-    private Key getSignKey() {
-        byte[] keyBytes = secretKey.getBytes();
-        return Keys.hmacShaKeyFor(keyBytes);
+    /**
+     * Issue time in milliseconds; tokens issued before the iat_ms claim fall back to iat,
+     * and a token without either gives -1
+     */
+    public static long issuedAtMillis(Claims claims) {
+        if (claims.get(ISSUED_AT_MS_CLAIM) instanceof Number issuedAtMs) {
+            return issuedAtMs.longValue();
+        }
+        Date issuedAt = claims.getIssuedAt();
+        return issuedAt != null ? issuedAt.getTime() : -1;
     }
 
     public boolean isRefreshToken(String token) {
@@ -0,0 +1,138 @@
+package com.harsh.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verifies JWTs once and remembers the result.
+ * The signing key and parser are built at startup; verified claims are cached
+ * by SHA-256 of the token until the token expires (capped by max-ttl).
+ * Returned claims are shared between callers and must not be modified.
+ */
+@Component
+@Slf4j
+public class JwtTokenVerifier {
+
+    @Value("${jwt.secret:mySuperSecretKeyForJWTGenerationThatShouldBeAtLeast32BytesLong}")
+    private String secretKey;
+
+    @Value("${jwt.verification-cache.max-size:10000}")
+    private long cacheMaxSize;
+
+    @Value("${jwt.verification-cache.max-ttl:300000}")
+    private long cacheMaxTtlMs;
+
+    private Key signingKey;
+    private JwtParser parser;
+    private Cache<String, Claims> verifiedTokens;
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(secretKey.getBytes());
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .build();
+
+        this.verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfter(new Expiry<String, Claims>() {
+                    @Override
+                    public long expireAfterCreate(String key, Claims claims, long currentTime) {
+                        return timeToLive(claims);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Claims claims, long currentTime, long currentDuration) {
+                        return timeToLive(claims);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Claims claims, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+
+        log.info("JWT verifier initialized (cache max size: {}, max ttl: {}ms)", cacheMaxSize, cacheMaxTtlMs);
+    }
+
+    /**
+     * Verify signature and expiry, returning all claims.
+     * Throws a JwtException if the token is invalid or expired.
+     */
+    public Claims verify(String token) {
+        String cacheKey = hash(token);
+
+        Claims cached = verifiedTokens.getIfPresent(cacheKey);
+        if (cached != null) {
+            // The cache entry can outlive exp by at most the clock granularity, re-check cheaply
+            Date expiration = cached.getExpiration();
+            if (expiration == null || expiration.after(new Date())) {
+                return cached;
+            }
+            verifiedTokens.invalidate(cacheKey);
+        }
+
+        Claims claims = parser.parseClaimsJws(token).getBody();
+        verifiedTokens.put(cacheKey, claims);
+        return claims;
+    }
+
+    /**
+     * Drop a token from the verified cache (e.g. on logout or revocation)
+     */
+    public void invalidate(String token) {
+        verifiedTokens.invalidate(hash(token));
+    }
+
+    public Key getSigningKey() {
+        return signingKey;
+    }
+
+    public long getCachedTokenCount() {
+        return verifiedTokens.estimatedSize();
+    }
+
+    public double getCacheHitRate() {
+        return verifiedTokens.stats().hitRate();
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private long timeToLive(Claims claims) {
+        long ttlMs = cacheMaxTtlMs;
+        Date expiration = claims.getExpiration();
+        if (expiration != null) {
+            ttlMs = Math.min(ttlMs, expiration.getTime() - System.currentTimeMillis());
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMs));
+    }
+
+    private String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashed = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(hashed);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.crypto.AesGcm;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Set;
+
+/**
+ * Wraps and unwraps room keys (and attachment file keys) with the master key, so only
+ * wrapped keys are ever stored.
+ * The AES-256 master key is the SHA-256 of encryption.master-key.
+ * With message or attachment encryption enabled, startup fails unless the key is set to
+ * something other than the defaults shipped in this repository.
+ */
+@Service
+@Slf4j
+public class MasterKeyService {
+
+    private static final String DEV_MASTER_KEY = "MySuperSecretMasterKeyForEncryption2026!";
+
+    // Published with the source, so they protect nothing
+    private static final Set<String> SHIPPED_KEYS = Set.of(
+            DEV_MASTER_KEY,
+            "MySuperSecretMasterKeyForEncryption2026!ChangeThisInProduction");
+
+    @Value("${encryption.master-key:}")
+    private String masterKeySecret;
+
+    @Value("${encryption.enabled:false}")
+    private boolean encryptionEnabled;
+
+    @Value("${file.encryption.enabled:false}")
+    private boolean fileEncryptionEnabled;
+
+    private SecretKey masterKey;
+
+    @PostConstruct
+    public void init() {
+        boolean unset = masterKeySecret == null || masterKeySecret.isBlank();
+        if (unset || SHIPPED_KEYS.contains(masterKeySecret)) {
+            if (encryptionEnabled || fileEncryptionEnabled) {
+                throw new IllegalStateException("encryption.master-key is "
+                        + (unset ? "not set" : "a published default")
+                        + "; set ENCRYPTION_MASTER_KEY to a private secret before enabling encryption");
+            }
+            if (unset) {
+                masterKeySecret = DEV_MASTER_KEY;
+            }
+            log.warn("Master key is a published default; acceptable only while encryption is disabled");
+        }
+
+        try {
+            byte[] aesKey = MessageDigest.getInstance("SHA-256")
+                    .digest(masterKeySecret.getBytes(StandardCharsets.UTF_8));
+            this.masterKey = new SecretKeySpec(aesKey, "AES");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+
+        log.info("Master key initialized");
+    }
+
+    /**
+     * Room key encrypted with the master key: base64(iv + ciphertext + tag)
+     */
+    public String wrap(SecretKey key) {
+        return Base64.getEncoder().encodeToString(wrapBytes(key));
+    }
+
+    /**
+     * Unencoded form of {@link #wrap(SecretKey)}, for binary headers
+     */
+    public byte[] wrapBytes(SecretKey key) {
+        try {
+            return AesGcm.seal(key.getEncoded(), masterKey);
+        } catch (GeneralSecurityException e) {
+            log.error("Failed to encrypt room key: {}", e.getMessage());
+            throw new RuntimeException("Failed to encrypt room key", e);
+        }
+    }
+
+    public SecretKey unwrap(String wrappedKey) {
+        try {
+            return unwrap(Base64.getDecoder().decode(wrappedKey));
+        } catch (IllegalArgumentException e) {
+            log.error("Failed to decrypt room key: {}", e.getMessage());
+            throw new RuntimeException("Failed to decrypt room key", e);
+        }
+    }
+
+    public SecretKey unwrap(byte[] wrappedKey) {
+        try {
+            return new SecretKeySpec(AesGcm.open(wrappedKey, 0, wrappedKey.length, masterKey), "AES");
+        } catch (GeneralSecurityException e) {
+            log.error("Failed to decrypt room key: {}", e.getMessage());
+            throw new RuntimeException("Failed to decrypt room key", e);
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.entity.Attachment;
+import com.harsh.chat.entity.AttachmentBlob;
+import com.harsh.chat.entity.MediaJob;
+import com.harsh.chat.entity.MediaJobStatus;
+import com.harsh.chat.entity.Message;
+import com.harsh.chat.storage.BlobStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import net.coobird.thumbnailator.Thumbnails;
+import org.jcodec.api.FrameGrab;
+import org.jcodec.api.JCodecException;
+import org.jcodec.common.DemuxerTrackMeta;
+import org.jcodec.common.VideoCodecMeta;
+import org.jcodec.common.io.FileChannelWrapper;
+import org.jcodec.common.io.NIOUtils;
+import org.jcodec.common.model.Picture;
+import org.jcodec.common.model.Size;
+import org.jcodec.scale.AWTUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates attachment derivatives off the request thread: a thumbnail plus sized JPEG
+ * variants for images, and the same from a poster frame for videos.
+ * Jobs are persisted in the media_jobs collection and claimed with a lease, so a
+ * restart or crash only delays them. Only as many jobs are claimed as the bounded
+ * worker pool can accept; the rest wait in Mongo, which is the back-pressure on upload
+ * bursts. Images and videos above max-pixels are not decoded at all.
+ * Readiness is announced on /topic/room/{roomId}/attachments.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MediaProcessingService {
+
+    private final MongoTemplate mongoTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final MeterRegistry meterRegistry;
+    private final BlobStore blobStore;
+    private final AttachmentEncryptionService attachmentEncryption;
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    @Value("${file.thumbnail-size:200}")
+    private int thumbnailSize;
+
+    @Value("${media.workers:2}")
+    private int workers;
+
+    @Value("${media.queue-capacity:20}")
+    private int queueCapacity;
+
+    @Value("${media.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${media.lease-ms:300000}")
+    private long leaseMs;
+
+    @Value("${media.poll-interval-ms:5000}")
+    private long pollIntervalMs;
+
+    @Value("${media.max-pixels:40000000}")
+    private long maxPixels;
+
+    @Value("${media.variant-sizes:200,640,1280}")
+    private int[] variantSizes;
+
+    @Value("${media.poster-second:1.0}")
+    private double posterSecond;
+
+    private ThreadPoolExecutor executor;
+    private ThreadPoolTaskScheduler scheduler;
+    private final AtomicLong backlog = new AtomicLong();
+
+    private Timer jobTimer;
+    private Counter succeededCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(
+                workers, workers,
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new CustomizableThreadFactory("media-worker-"),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("media-dispatch-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::poll, Duration.ofMillis(pollIntervalMs));
+
+        jobTimer = Timer.builder("media.job.duration")
+                .description("Time to generate an attachment's derivatives")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        succeededCounter = Counter.builder("media.jobs").tag("outcome", "success").register(meterRegistry);
+        retriedCounter = Counter.builder("media.jobs").tag("outcome", "retry").register(meterRegistry);
+        failedCounter = Counter.builder("media.jobs").tag("outcome", "failure").register(meterRegistry);
+
+        Gauge.builder("media.queue.depth", executor, e -> e.getQueue().size())
+                .description("Claimed jobs waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("media.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Jobs currently running")
+                .register(meterRegistry);
+        Gauge.builder("media.backlog", backlog, AtomicLong::get)
+                .description("Jobs waiting in Mongo, as of the last poll")
+                .register(meterRegistry);
+
+        log.info("Media pipeline initialized: {} workers, queue capacity {}", workers, queueCapacity);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+        executor.shutdown();
+    }
+
+    /**
+     * Queue derivative generation for a newly stored blob; the dispatch thread starts it right away
+     */
+    public void enqueue(AttachmentBlob blob) {
+        LocalDateTime now = LocalDateTime.now();
+        Update update = new Update()
+                .set("sourcePath", blob.getFilePath())
+                .set("fileType", blob.getFileType())
+                .set("status", MediaJobStatus.PENDING)
+                .set("attempts", 0)
+                .set("createdAt", now)
+                .set("availableAt", now)
+                .unset("lastError")
+                .unset("completedAt");
+
+        try {
+            mongoTemplate.upsert(Query.query(Criteria.where("blobHash").is(blob.getHash())), update, MediaJob.class);
+        } catch (DuplicateKeyException e) {
+            // Concurrent upsert for the same blob already queued it
+        }
+
+        // Claim on the dispatch thread, not the upload's
+        scheduler.execute(this::poll);
+    }
+
+    /**
+     * Images get a thumbnail and sized variants; MP4/QuickTime videos get the same from a poster frame
+     * (jcodec only demuxes ISO-BMFF containers)
+     */
+    public boolean needsDerivatives(String mimeType) {
+        return mimeType.startsWith("image/")
+                || mimeType.equals("video/mp4")
+                || mimeType.equals("video/quicktime");
+    }
+
+    // ============== DISPATCH ==============
+
+    void poll() {
+        try {
+            failExhausted();
+            dispatch();
+            backlog.set(mongoTemplate.count(
+                    Query.query(Criteria.where("status").in(MediaJobStatus.PENDING, MediaJobStatus.RUNNING)),
+                    MediaJob.class));
+        } catch (Exception e) {
+            log.warn("Media job poll failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Claim jobs while the pool has room for them
+     */
+    private void dispatch() {
+        while (executor.getQueue().remainingCapacity() > 0) {
+            MediaJob job = claimNext();
+            if (job == null) {
+                return;
+            }
+
+            try {
+                executor.execute(() -> process(job));
+            } catch (RejectedExecutionException e) {
+                // Lost a race for the last slot: hand the job back
+                release(job);
+                return;
+            }
+        }
+    }
+
+    private MediaJob claimNext() {
+        LocalDateTime now = LocalDateTime.now();
+        Query query = Query.query(Criteria.where("status").in(MediaJobStatus.PENDING, MediaJobStatus.RUNNING)
+                        .and("availableAt").lte(now)
+                        .and("attempts").lt(maxAttempts))
+                .with(Sort.by("availableAt"));
+
+        Update update = new Update()
+                .set("status", MediaJobStatus.RUNNING)
+                .set("availableAt", now.plus(Duration.ofMillis(leaseMs)))
+                .inc("attempts", 1);
+
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), MediaJob.class);
+    }
+
+    /**
+     * A job whose lease expired on its last attempt (the worker died mid-job) is not
+     * claimable again: fail it so its attachments stop waiting
+     */
+    private void failExhausted() {
+        while (true) {
+            MediaJob job = mongoTemplate.findAndModify(
+                    Query.query(Criteria.where("status").in(MediaJobStatus.PENDING, MediaJobStatus.RUNNING)
+                            .and("availableAt").lte(LocalDateTime.now())
+                            .and("attempts").gte(maxAttempts)),
+                    new Update().set("status", MediaJobStatus.FAILED)
+                            .set("lastError", "Gave up after " + maxAttempts + " attempts")
+                            .set("completedAt", LocalDateTime.now()),
+                    MediaJob.class);
+            if (job == null) {
+                return;
+            }
+
+            log.warn("Media job {} for blob {} exhausted its {} attempts", job.getId(), job.getBlobHash(), maxAttempts);
+            failedCounter.increment();
+            publishResult(job.getBlobHash(), null);
+        }
+    }
+
+    private void release(MediaJob job) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(job.getId())),
+                new Update().set("status", MediaJobStatus.PENDING)
+                        .set("availableAt", LocalDateTime.now())
+                        .inc("attempts", -1),
+                MediaJob.class);
+    }
+
+    // ============== PROCESSING ==============
+
+    private void process(MediaJob job) {
+        long start = System.nanoTime();
+        try {
+            Derivatives derivatives = generateDerivatives(job);
+            complete(job, derivatives);
+            succeededCounter.increment();
+        } catch (Exception e) {
+            fail(job, e);
+        } finally {
+            jobTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Decode the image (or grab the video poster frame) once and scale every derivative from it
+     */
+    private Derivatives generateDerivatives(MediaJob job) throws IOException, JCodecException {
+        BufferedImage image;
+        // Decoders need a plaintext file; on a remote store or encrypted at rest this is a temporary copy
+        try (BlobStore.LocalFile source = attachmentEncryption.decryptToLocalFile(
+                blobStore.toLocalFile(BlobStore.keyOf(job.getSourcePath())), workDirectory())) {
+            if (job.getFileType().startsWith("video/")) {
+                image = grabPosterFrame(source.path());
+            } else {
+                checkDimensions(source.path());
+                image = ImageIO.read(source.path().toFile());
+            }
+        }
+        if (image == null) {
+            throw new IllegalArgumentException("Unsupported image format: " + job.getFileType());
+        }
+
+        String thumbnailKey = "thumbnails/thumb_" + job.getBlobHash() + ".jpg";
+        writeScaled(image, thumbnailSize, thumbnailKey);
+
+        Map<String, String> variantPaths = new TreeMap<>();
+        variantPaths.put(String.valueOf(thumbnailSize), thumbnailKey);
+
+        int longestSide = Math.max(image.getWidth(), image.getHeight());
+        for (int size : variantSizes) {
+            // Never upscale; the original serves anything larger
+            if (size == thumbnailSize || size >= longestSide) {
+                continue;
+            }
+            String variantKey = "thumbnails/" + job.getBlobHash() + "_" + size + ".jpg";
+            writeScaled(image, size, variantKey);
+            variantPaths.put(String.valueOf(size), variantKey);
+        }
+
+        return new Derivatives(thumbnailKey, variantPaths, image.getWidth(), image.getHeight());
+    }
+
+    private BufferedImage grabPosterFrame(Path source) throws IOException, JCodecException {
+        checkVideoDimensions(source);
+
+        Picture frame;
+        try {
+            frame = FrameGrab.getFrameAtSec(source.toFile(), posterSecond);
+        } catch (Exception e) {
+            // Clip shorter than the poster offset: use the first frame
+            frame = FrameGrab.getFrameFromFile(source.toFile(), 0);
+        }
+        return AWTUtil.toBufferedImage(frame);
+    }
+
+    /**
+     * Read the video track's dimensions from the container and refuse to decode a frame
+     * that would need too much heap
+     */
+    private void checkVideoDimensions(Path source) throws IOException, JCodecException {
+        try (FileChannelWrapper channel = NIOUtils.readableChannel(source.toFile())) {
+            DemuxerTrackMeta meta = FrameGrab.createFrameGrab(channel).getVideoTrack().getMeta();
+            VideoCodecMeta codecMeta = meta != null ? meta.getVideoCodecMeta() : null;
+            if (codecMeta == null || codecMeta.getSize() == null) {
+                throw new IllegalArgumentException("Video dimensions unknown, not decoding a poster frame");
+            }
+
+            Size size = codecMeta.getSize();
+            if ((long) size.getWidth() * size.getHeight() > maxPixels) {
+                throw new IllegalArgumentException("Video frame too large for poster: " + size.getWidth() + "x" + size.getHeight());
+            }
+        }
+    }
+
+    private void writeScaled(BufferedImage image, int size, String key) throws IOException {
+        Path scaled = Files.createTempFile(workDirectory(), "derivative-", ".jpg");
+        try {
+            // Derivatives show the content too, so they are encrypted at rest like the original
+            try (OutputStream out = attachmentEncryption.encryptingStream(Files.newOutputStream(scaled))) {
+                Thumbnails.of(image)
+                        .size(size, size)
+                        .outputFormat("jpg")
+                        .toOutputStream(out);
+            }
+            blobStore.put(key, scaled, "image/jpeg");
+        } finally {
+            Files.deleteIfExists(scaled);
+        }
+    }
+
+    private Path workDirectory() {
+        return Paths.get(uploadDir).toAbsolutePath().normalize().resolve("tmp");
+    }
+
+    /**
+     * Read only the image header and refuse decodes that would need too much heap
+     */
+    private void checkDimensions(Path source) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(source.toFile())) {
+            if (input == null) {
+                return;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    throw new IllegalArgumentException("Image too large for thumbnail: " + pixels + " pixels");
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private void complete(MediaJob job, Derivatives derivatives) {
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(job.getId())),
+                new Update().set("status", MediaJobStatus.DONE).set("completedAt", LocalDateTime.now()),
+                MediaJob.class);
+
+        publishResult(job.getBlobHash(), derivatives);
+        log.info("Derivatives ready for blob {}: {}", job.getBlobHash(), derivatives.variantPaths().keySet());
+    }
+
+    private void fail(MediaJob job, Exception e) {
+        boolean retry = job.getAttempts() < maxAttempts && !(e instanceof IllegalArgumentException);
+        log.warn("Media job {} for blob {} failed (attempt {}): {}",
+                job.getId(), job.getBlobHash(), job.getAttempts(), e.getMessage());
+
+        Update update = new Update().set("lastError", e.getMessage());
+        if (retry) {
+            // Exponential backoff: 10s, 20s, 40s...
+            long backoffMs = 10_000L << Math.min(job.getAttempts() - 1, 10);
+            update.set("status", MediaJobStatus.PENDING)
+                    .set("availableAt", LocalDateTime.now().plus(Duration.ofMillis(backoffMs)));
+            retriedCounter.increment();
+        } else {
+            update.set("status", MediaJobStatus.FAILED)
+                    .set("completedAt", LocalDateTime.now());
+            failedCounter.increment();
+        }
+
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getId())), update, MediaJob.class);
+
+        if (!retry) {
+            publishResult(job.getBlobHash(), null);
+        }
+    }
+
+    /**
+     * Record the outcome on the blob, its attachments and their messages, then notify the rooms.
+     * A null result marks the derivatives as failed.
+     */
+    private void publishResult(String blobHash, Derivatives derivatives) {
+        String thumbnailPath = derivatives != null ? derivatives.thumbnailPath() : null;
+        String thumbnailUrl = thumbnailPath != null ? toUrl(thumbnailPath) : null;
+
+        Map<String, String> variantUrls = new TreeMap<>();
+        if (derivatives != null) {
+            derivatives.variantPaths().forEach((size, path) -> variantUrls.put(size, toUrl(path)));
+        }
+
+        Update blobUpdate = new Update().set("thumbnailPath", thumbnailPath)
+                .set("thumbnailUrl", thumbnailUrl)
+                .set("thumbnailPending", false);
+        if (derivatives != null) {
+            blobUpdate.set("variantPaths", derivatives.variantPaths())
+                    .set("variantUrls", variantUrls)
+                    .set("width", derivatives.width())
+                    .set("height", derivatives.height());
+        }
+        // Blob first: an attachment saved after the updateMulti below copies the result from it
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(blobHash)), blobUpdate, AttachmentBlob.class);
+
+        Query attachmentsQuery = Query.query(Criteria.where("contentHash").is(blobHash));
+        Update attachmentUpdate = new Update().set("thumbnailPath", thumbnailPath)
+                .set("thumbnailUrl", thumbnailUrl)
+                .set("thumbnailPending", false);
+        if (derivatives != null) {
+            attachmentUpdate.set("variantUrls", variantUrls)
+                    .set("width", derivatives.width())
+                    .set("height", derivatives.height());
+        }
+        mongoTemplate.updateMulti(attachmentsQuery, attachmentUpdate, Attachment.class);
+
+        List<Attachment> attachments = mongoTemplate.find(attachmentsQuery, Attachment.class);
+        List<String> attachmentIds = attachments.stream().map(Attachment::getId).toList();
+        if (!attachmentIds.isEmpty()) {
+            mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("attachmentId").in(attachmentIds)),
+                    new Update().set("thumbnailUrl", thumbnailUrl),
+                    Message.class);
+        }
+
+        for (Attachment attachment : attachments) {
+            if (attachment.getRoomId() == null) {
+                continue;
+            }
+
+            Map<String, Object> event = new HashMap<>();
+            event.put("type", thumbnailUrl != null ? "THUMBNAIL_READY" : "THUMBNAIL_FAILED");
+            event.put("attachmentId", attachment.getId());
+            event.put("messageId", attachment.getMessageId());
+            event.put("thumbnailUrl", thumbnailUrl);
+            event.put("variantUrls", variantUrls);
+            event.put("timestamp", System.currentTimeMillis());
+
+            messagingTemplate.convertAndSend("/topic/room/" + attachment.getRoomId() + "/attachments", event);
+        }
+    }
+
+    private String toUrl(String path) {
+        return "/api/v1/attachments/view/thumbnails/" + Paths.get(path).getFileName();
+    }
+
+    private record Derivatives(String thumbnailPath, Map<String, String> variantPaths, int width, int height) {
+    }
+}
@@ -0,0 +1,189 @@
+package com.harsh.chat.service;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mongo command latency, per collection and operation, as mongodb.command{collection,command,outcome}
+ * with a percentile histogram. Replaces Boot's mongodb.driver.commands timer, which has no
+ * histogram. Commands slower than slow-command-ms are logged with their shape: the command
+ * with every value replaced by ?, except sort, hint and projection, so a missing index shows
+ * up without logging message contents. Set slow-command-ms to 0 to turn the log off.
+ * Per repository method latency comes from Spring Data's spring.data.repository.invocations.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MongoCommandMetrics implements CommandListener, MongoClientSettingsBuilderCustomizer {
+
+    private static final String NO_COLLECTION = "none";
+    private static final int MAX_SHAPE_LENGTH = 1000;
+
+    /** Driver fields that say nothing about the query */
+    private static final Set<String> IGNORED_FIELDS = Set.of(
+            "$db", "lsid", "$clusterTime", "txnNumber", "$readPreference", "readConcern",
+            "writeConcern", "autocommit", "startTransaction", "apiVersion", "comment");
+
+    /** Fields whose values are part of the shape */
+    private static final Set<String> VERBATIM_FIELDS = Set.of("sort", "hint", "projection");
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metrics.mongo.slow-command-ms:100}")
+    private long slowCommandMs;
+
+    private final Map<Integer, StartedCommand> inFlight = new ConcurrentHashMap<>();
+
+    private Meter.MeterProvider<Timer> commandTimers;
+
+    @PostConstruct
+    public void init() {
+        commandTimers = Timer.builder("mongodb.command")
+                .description("Mongo command latency by collection and command")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(10))
+                .withRegistry(meterRegistry);
+
+        log.info("Mongo command metrics initialized: slow command log {}",
+                slowCommandMs > 0 ? "at " + slowCommandMs + " ms" : "off");
+    }
+
+    @Override
+    public void customize(MongoClientSettings.Builder builder) {
+        builder.addCommandListener(this);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        // The command document is only readable during this callback
+        BsonDocument command = event.getCommand();
+        inFlight.put(event.getRequestId(), new StartedCommand(
+                collection(command, event.getCommandName()),
+                slowCommandMs > 0 ? shape(command) : null));
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        record(event.getRequestId(), event.getCommandName(), event.getDatabaseName(),
+                event.getElapsedTime(TimeUnit.NANOSECONDS), ChatMetrics.OUTCOME_SUCCESS);
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        record(event.getRequestId(), event.getCommandName(), event.getDatabaseName(),
+                event.getElapsedTime(TimeUnit.NANOSECONDS), ChatMetrics.OUTCOME_ERROR);
+    }
+
+    /**
+     * The command with values redacted, for the slow command log
+     */
+    static String shape(BsonDocument command) {
+        StringBuilder shape = new StringBuilder("{");
+        boolean first = true;
+        for (Map.Entry<String, BsonValue> field : command.entrySet()) {
+            if (IGNORED_FIELDS.contains(field.getKey())) {
+                continue;
+            }
+            if (!first) {
+                shape.append(", ");
+            }
+
+            shape.append(field.getKey()).append(": ");
+            if (first && field.getValue().isString()) {
+                // The command name's value is the collection
+                shape.append(field.getValue().asString().getValue());
+            } else if (VERBATIM_FIELDS.contains(field.getKey()) && field.getValue().isDocument()) {
+                shape.append(field.getValue().asDocument().toJson());
+            } else {
+                redact(field.getValue(), shape);
+            }
+            first = false;
+
+            if (shape.length() > MAX_SHAPE_LENGTH) {
+                return shape.substring(0, MAX_SHAPE_LENGTH) + "...";
+            }
+        }
+        return shape.append('}').toString();
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private void record(int requestId, String commandName, String database, long nanos, String outcome) {
+        StartedCommand started = inFlight.remove(requestId);
+        String collection = started != null ? started.collection() : NO_COLLECTION;
+
+        commandTimers.withTags("collection", collection, "command", commandName, "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        if (slowCommandMs > 0 && nanos >= TimeUnit.MILLISECONDS.toNanos(slowCommandMs)) {
+            log.warn("Slow Mongo command: {} on {}.{} took {} ms ({}): {}", commandName, database, collection,
+                    TimeUnit.NANOSECONDS.toMillis(nanos), outcome, started != null ? started.shape() : "?");
+        }
+    }
+
+    private static String collection(BsonDocument command, String commandName) {
+        BsonValue value = command.get("getMore".equals(commandName) ? "collection" : commandName);
+        return value != null && value.isString() ? value.asString().getValue() : NO_COLLECTION;
+    }
+
+    /**
+     * Structure only: documents keep their keys, arrays show their first element and size,
+     * everything else is ?
+     */
+    private static void redact(BsonValue value, StringBuilder shape) {
+        if (value.isDocument()) {
+            BsonDocument document = value.asDocument();
+            shape.append('{');
+            boolean first = true;
+            for (Map.Entry<String, BsonValue> field : document.entrySet()) {
+                if (!first) {
+                    shape.append(", ");
+                }
+                first = false;
+                shape.append(field.getKey()).append(": ");
+                redact(field.getValue(), shape);
+                if (shape.length() > MAX_SHAPE_LENGTH) {
+                    return;
+                }
+            }
+            shape.append('}');
+        } else if (value.isArray()) {
+            BsonArray array = value.asArray();
+            shape.append('[');
+            if (!array.isEmpty()) {
+                redact(array.get(0), shape);
+                if (array.size() > 1) {
+                    shape.append(", ...").append(array.size() - 1).append(" more");
+                }
+            }
+            shape.append(']');
+        } else {
+            shape.append('?');
+        }
+    }
+
+    private record StartedCommand(String collection, String shape) {
+    }
+}
@@ -0,0 +1,77 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.annotation.RateLimit;
+import com.harsh.chat.config.RateLimitProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns a @RateLimit annotation, or a named policy checked from service code, into a bucket
+ * key and limit and checks it. Shared by the REST aspect and the STOMP inbound channel interceptor.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimitPolicyService {
+
+    private final RateLimiterService rateLimiterService;
+    private final RateLimitProperties properties;
+
+    private final ExpressionParser parser = new SpelExpressionParser();
+    private final Map<String, Expression> expressions = new ConcurrentHashMap<>();
+
+    /**
+     * @param handlerName    bucket name used when the annotation has no policy
+     * @param context        variables available to the key expression
+     * @param defaultSubject key used when the annotation has no key expression
+     */
+    public boolean tryAcquire(RateLimit rateLimit, String handlerName, EvaluationContext context, String defaultSubject) {
+        String subject = rateLimit.key().isEmpty() ? defaultSubject : evaluateKey(rateLimit.key(), context, defaultSubject);
+
+        if (rateLimit.policy().isEmpty()) {
+            return rateLimiterService.tryAcquire(handlerName + ":" + subject, rateLimit.maxAttempts(), rateLimit.timeWindow());
+        }
+        return tryAcquire(rateLimit.policy(), subject, rateLimit.maxAttempts(), rateLimit.timeWindow());
+    }
+
+    /**
+     * Check a configured policy for one subject, for limits applied outside a handler
+     *
+     * @param defaultMaxAttempts used when the policy is not configured
+     * @param defaultTimeWindow  used when the policy is not configured
+     */
+    public boolean tryAcquire(String policyName, String subject, int defaultMaxAttempts, int defaultTimeWindow) {
+        int maxAttempts = defaultMaxAttempts;
+        int timeWindow = defaultTimeWindow;
+
+        RateLimitProperties.Policy policy = properties.getPolicies().get(policyName);
+        if (policy != null) {
+            maxAttempts = policy.getMaxAttempts();
+            timeWindow = policy.getTimeWindow();
+        } else {
+            log.warn("Rate limit policy '{}' is not configured, using defaults", policyName);
+        }
+
+        return rateLimiterService.tryAcquire(policyName + ":" + subject, maxAttempts, timeWindow);
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private String evaluateKey(String keyExpression, EvaluationContext context, String defaultSubject) {
+        try {
+            Object value = expressions.computeIfAbsent(keyExpression, parser::parseExpression).getValue(context);
+            return value != null ? value.toString() : defaultSubject;
+        } catch (Exception e) {
+            log.warn("Failed to evaluate rate limit key '{}': {}", keyExpression, e.getMessage());
+            return defaultSubject;
+        }
+    }
+}
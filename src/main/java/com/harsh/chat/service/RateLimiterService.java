@@ -0,0 +1,193 @@
+package com.harsh.chat.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token-bucket rate limiter that answers from memory.
+ * Each key has a local GCRA bucket (one AtomicLong, no locks). A background task
+ * pushes locally admitted units to a cluster-wide GCRA state in Redis and pulls
+ * back the cluster debt, so other nodes' traffic shrinks this node's budget.
+ * Between syncs a node can over-admit by at most its own share of one sync interval.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RateLimiterService {
+
+    private static final String RATE_KEY_PREFIX = "rate:gcra:";
+
+    // Applies ARGV[2] units to the key's theoretical arrival time and returns the debt in microseconds
+    private static final DefaultRedisScript<Long> GCRA_SCRIPT = new DefaultRedisScript<>("""
+            local t = redis.call('TIME')
+            local now = tonumber(t[1]) * 1000000 + tonumber(t[2])
+            local interval = tonumber(ARGV[1])
+            local units = tonumber(ARGV[2])
+            local window = tonumber(ARGV[3])
+            local tat = tonumber(redis.call('GET', KEYS[1]))
+            if tat == nil or tat < now then tat = now end
+            tat = math.min(tat + interval * units, now + 2 * window)
+            redis.call('SET', KEYS[1], string.format('%.0f', tat), 'PX', math.ceil((tat - now) / 1000) + 1000)
+            return math.floor(tat - now)
+            """, Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    @Value("${rate-limit.sync-interval-ms:1000}")
+    private long syncIntervalMs;
+
+    @Value("${rate-limit.cluster-sync:true}")
+    private boolean clusterSync;
+
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private ThreadPoolTaskScheduler scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("rate-limit-sync-");
+        scheduler.initialize();
+        scheduler.scheduleWithFixedDelay(this::reconcile, Duration.ofMillis(syncIntervalMs));
+
+        log.info("Rate limiter initialized (cluster sync: {}, interval: {}ms)", clusterSync, syncIntervalMs);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Take one unit from the key's budget of maxAttempts per timeWindowSeconds
+     */
+    public boolean tryAcquire(String key, int maxAttempts, int timeWindowSeconds) {
+        Bucket bucket = buckets.computeIfAbsent(key, k -> new Bucket(maxAttempts, timeWindowSeconds));
+        boolean allowed = bucket.tryAcquire(System.nanoTime());
+        if (!allowed) {
+            log.warn("Rate limit exceeded for: {}", key);
+        }
+        return allowed;
+    }
+
+    public int getTrackedKeyCount() {
+        return buckets.size();
+    }
+
+    // ============== CLUSTER RECONCILIATION ==============
+
+    void reconcile() {
+        long now = System.nanoTime();
+
+        for (Map.Entry<String, Bucket> entry : buckets.entrySet()) {
+            Bucket bucket = entry.getValue();
+            long units = bucket.drainPending();
+
+            if (units == 0) {
+                // Fully refilled and idle: drop it, it will be recreated on next use
+                if (bucket.isIdle(now)) {
+                    buckets.remove(entry.getKey(), bucket);
+                }
+                continue;
+            }
+
+            if (!clusterSync) {
+                continue;
+            }
+
+            try {
+                Long debtMicros = redisTemplate.execute(GCRA_SCRIPT,
+                        List.of(RATE_KEY_PREFIX + entry.getKey()),
+                        bucket.intervalMicros(), units, bucket.windowMicros());
+
+                if (debtMicros != null) {
+                    bucket.applyClusterDebt(System.nanoTime(), TimeUnit.MICROSECONDS.toNanos(debtMicros));
+                }
+            } catch (Exception e) {
+                // Redis unavailable: keep enforcing the local budget only, and report these
+                // units with the next sync so the cluster state still sees them
+                bucket.requeue(units, System.nanoTime());
+                log.debug("Rate limit sync failed for {}: {}", entry.getKey(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * GCRA bucket: tat is the theoretical arrival time of the next request.
+     * Capacity is maxAttempts, refilled at maxAttempts per window.
+     */
+    static final class Bucket {
+        private final long intervalNanos;
+        private final long windowNanos;
+        private final AtomicLong tat;
+        private final LongAdder pending = new LongAdder();
+
+        Bucket(int maxAttempts, int timeWindowSeconds) {
+            this.windowNanos = TimeUnit.SECONDS.toNanos(timeWindowSeconds);
+            this.intervalNanos = windowNanos / Math.max(1, maxAttempts);
+            this.tat = new AtomicLong(System.nanoTime());
+        }
+
+        boolean tryAcquire(long now) {
+            while (true) {
+                long current = tat.get();
+                long next = Math.max(current, now) + intervalNanos;
+                if (next - now > windowNanos) {
+                    return false;
+                }
+                if (tat.compareAndSet(current, next)) {
+                    pending.increment();
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Units admitted since the last sync, resetting the count
+         */
+        long drainPending() {
+            return pending.sumThenReset();
+        }
+
+        /**
+         * Put back units a failed sync drained. Once the bucket has fully refilled they no
+         * longer weigh on the window, and reporting them late would only over-charge it.
+         */
+        void requeue(long units, long now) {
+            if (!isIdle(now)) {
+                pending.add(units);
+            }
+        }
+
+        void applyClusterDebt(long now, long debtNanos) {
+            tat.accumulateAndGet(now + debtNanos, Math::max);
+        }
+
+        boolean isIdle(long now) {
+            return tat.get() < now;
+        }
+
+        long intervalMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(intervalNanos);
+        }
+
+        long windowMicros() {
+            return TimeUnit.NANOSECONDS.toMicros(windowNanos);
+        }
+    }
+}
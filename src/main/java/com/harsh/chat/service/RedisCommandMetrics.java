@@ -0,0 +1,62 @@
+package com.harsh.chat.service;
+
+import io.lettuce.core.metrics.CommandLatencyRecorder;
+import io.lettuce.core.protocol.ProtocolKeyword;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis command latency as redis.command{command} with a percentile histogram, recorded by
+ * Lettuce for every command on every connection, RedisTemplate and cache operations alike.
+ * Latency runs from the command being written to its reply completing, so it includes
+ * time queued behind other commands on the shared connection. Commands slower than
+ * slow-command-ms are logged; Lettuce only reports the command type, not its keys.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RedisCommandMetrics implements CommandLatencyRecorder {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metrics.redis.slow-command-ms:50}")
+    private long slowCommandMs;
+
+    private Meter.MeterProvider<Timer> commandTimers;
+
+    @PostConstruct
+    public void init() {
+        commandTimers = Timer.builder("redis.command")
+                .description("Redis command latency by command")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(50_000))
+                .maximumExpectedValue(Duration.ofSeconds(5))
+                .withRegistry(meterRegistry);
+
+        log.info("Redis command metrics initialized: slow command log {}",
+                slowCommandMs > 0 ? "at " + slowCommandMs + " ms" : "off");
+    }
+
+    @Override
+    public void recordCommandLatency(SocketAddress local, SocketAddress remote, ProtocolKeyword commandType,
+                                     long firstResponseLatency, long completionLatency) {
+        String command = commandType.toString();
+        commandTimers.withTags("command", command).record(completionLatency, TimeUnit.NANOSECONDS);
+
+        if (slowCommandMs > 0 && completionLatency >= TimeUnit.MILLISECONDS.toNanos(slowCommandMs)) {
+            log.warn("Slow Redis command: {} on {} took {} ms (first response after {} ms)", command, remote,
+                    TimeUnit.NANOSECONDS.toMillis(completionLatency),
+                    TimeUnit.NANOSECONDS.toMillis(firstResponseLatency));
+        }
+    }
+}
@@ -4,11 +4,15 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.harsh.chat.entity.Message;
 import com.harsh.chat.entity.Room;
 import com.harsh.chat.entity.User;
+import com.harsh.chat.payload.ThreadSummaryDTO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
@@ -29,6 +33,8 @@ public class RedisService {
     private static final String USER_ROOM_PREFIX = "user:room:";
     private static final String USER_TYPING_PREFIX = "typing:";
     private static final String USER_LAST_SEEN_PREFIX = "lastseen:";
+    private static final String THREAD_SUMMARY_PREFIX = "thread:summary:";
+    private static final String THREAD_PARTICIPANTS_PREFIX = "thread:participants:";
 
     private <T> T safeCast(Object obj, Class<T> clazz) {
         if (obj == null) return null;
@@ -222,27 +228,6 @@ public class RedisService {
         }
     }
 
-    public boolean checkRateLimit(String key, int maxAttempts, int timeWindowSeconds) {
-        try {
-            String rateKey = "rate:" + key;
-            Long currentCount = redisTemplate.opsForValue().increment(rateKey);
-
-            if (currentCount == 1) {
-                // First attempt, set expiry
-                redisTemplate.expire(rateKey, timeWindowSeconds, TimeUnit.SECONDS);
-            }
-
-            boolean allowed = currentCount <= maxAttempts;
-            if (!allowed) {
-                log.warn("Rate limit exceeded for: {}", key);
-            }
-            return allowed;
-        } catch (Exception e) {
-            log.error("Rate limit check failed: {}", e.getMessage());
-            return true; // Fail open (allow action if Redis is down)
-        }
-    }
-
     public void clearRoomCache(String roomId) {
         try {
             String recentKey = RECENT_MESSAGES_KEY_PREFIX + roomId;
@@ -262,6 +247,130 @@ public class RedisService {
     }
 
 
+    // ============== THREAD SUMMARY CACHE ==============
+
+    /**
+     * Record a new reply in a cached thread summary (count, last reply, participants).
+     * Only a summary that is still cached is updated: writing these fields into a missing or
+     * expired one would leave a partial summary that reads as complete. A miss is left for
+     * the next read to rebuild from the database.
+     */
+    public void recordThreadReply(String parentMessageId, Message reply, int replyCount) {
+        try {
+            String summaryKey = THREAD_SUMMARY_PREFIX + parentMessageId;
+            String participantsKey = THREAD_PARTICIPANTS_PREFIX + parentMessageId;
+
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("roomId", reply.getRoomId());
+            fields.put("replyCount", replyCount);
+            fields.put("lastReplyId", reply.getId());
+            fields.put("lastReplySender", reply.getSender());
+            if (reply.getContent() != null) {
+                fields.put("lastReplyContent", ThreadSummaryDTO.preview(reply.getContent()));
+            }
+            if (reply.getTimestamp() != null) {
+                fields.put("lastReplyAt", reply.getTimestamp().toString());
+            }
+
+            Boolean conflicted = redisTemplate.execute(new SessionCallback<Boolean>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Boolean execute(RedisOperations<K, V> operations) {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    ops.watch(summaryKey);
+                    if (!Boolean.TRUE.equals(ops.hasKey(summaryKey))) {
+                        ops.unwatch();
+                        return false;
+                    }
+
+                    ops.multi();
+                    ops.opsForHash().putAll(summaryKey, fields);
+                    ops.opsForSet().add(participantsKey, reply.getSender());
+                    ops.expire(summaryKey, 1, TimeUnit.HOURS);
+                    ops.expire(participantsKey, 1, TimeUnit.HOURS);
+                    // Empty when the summary changed or expired after WATCH
+                    return ops.exec().isEmpty();
+                }
+            });
+
+            if (Boolean.TRUE.equals(conflicted)) {
+                evictThreadSummary(parentMessageId);
+            }
+            log.debug("Updated thread summary for: {}", parentMessageId);
+        } catch (Exception e) {
+            log.error("Failed to update thread summary: {}", e.getMessage());
+            evictThreadSummary(parentMessageId);
+        }
+    }
+
+    /**
+     * Cache a thread summary rebuilt from the database
+     */
+    public void cacheThreadSummary(ThreadSummaryDTO summary) {
+        try {
+            String summaryKey = THREAD_SUMMARY_PREFIX + summary.getParentMessageId();
+            String participantsKey = THREAD_PARTICIPANTS_PREFIX + summary.getParentMessageId();
+
+            Map<String, Object> fields = new HashMap<>();
+            fields.put("replyCount", summary.getReplyCount());
+            if (summary.getRoomId() != null) fields.put("roomId", summary.getRoomId());
+            if (summary.getLastReplyId() != null) fields.put("lastReplyId", summary.getLastReplyId());
+            if (summary.getLastReplySender() != null) fields.put("lastReplySender", summary.getLastReplySender());
+            if (summary.getLastReplyContent() != null) fields.put("lastReplyContent", ThreadSummaryDTO.preview(summary.getLastReplyContent()));
+            if (summary.getLastReplyAt() != null) fields.put("lastReplyAt", summary.getLastReplyAt().toString());
+
+            redisTemplate.delete(participantsKey);
+            redisTemplate.opsForHash().putAll(summaryKey, fields);
+            if (summary.getParticipants() != null && !summary.getParticipants().isEmpty()) {
+                redisTemplate.opsForSet().add(participantsKey, summary.getParticipants().toArray());
+                redisTemplate.expire(participantsKey, 1, TimeUnit.HOURS);
+            }
+            redisTemplate.expire(summaryKey, 1, TimeUnit.HOURS);
+        } catch (Exception e) {
+            log.error("Failed to cache thread summary: {}", e.getMessage());
+        }
+    }
+
+    public ThreadSummaryDTO getCachedThreadSummary(String parentMessageId) {
+        try {
+            Map<Object, Object> fields = redisTemplate.opsForHash().entries(THREAD_SUMMARY_PREFIX + parentMessageId);
+            if (fields == null || fields.isEmpty()) {
+                return null;
+            }
+
+            Set<Object> participants = redisTemplate.opsForSet().members(THREAD_PARTICIPANTS_PREFIX + parentMessageId);
+            Object replyCount = fields.get("replyCount");
+            Object lastReplyAt = fields.get("lastReplyAt");
+
+            return ThreadSummaryDTO.builder()
+                    .parentMessageId(parentMessageId)
+                    .roomId((String) fields.get("roomId"))
+                    .replyCount(replyCount != null ? Integer.parseInt(replyCount.toString()) : 0)
+                    .lastReplyId((String) fields.get("lastReplyId"))
+                    .lastReplySender((String) fields.get("lastReplySender"))
+                    .lastReplyContent((String) fields.get("lastReplyContent"))
+                    .lastReplyAt(lastReplyAt != null ? LocalDateTime.parse(lastReplyAt.toString()) : null)
+                    .participants(participants != null
+                            ? participants.stream().map(Object::toString).collect(Collectors.toSet())
+                            : new HashSet<>())
+                    .build();
+        } catch (Exception e) {
+            log.error("Failed to get thread summary from cache: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public void evictThreadSummary(String parentMessageId) {
+        try {
+            redisTemplate.delete(THREAD_SUMMARY_PREFIX + parentMessageId);
+            redisTemplate.delete(THREAD_PARTICIPANTS_PREFIX + parentMessageId);
+            log.debug("Evicted thread summary: {}", parentMessageId);
+        } catch (Exception e) {
+            log.error("Failed to evict thread summary: {}", e.getMessage());
+        }
+    }
+
+
     public Map<String, Long> getCacheStats() {
         Map<String, Long> stats = new HashMap<>();
         try {
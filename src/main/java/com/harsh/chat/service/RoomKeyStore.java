@@ -0,0 +1,203 @@
+package com.harsh.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.harsh.chat.entity.RoomKey;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Versioned room keys, persisted wrapped in the room_keys collection and unwrapped lazily
+ * into bounded in-memory caches. A key version never changes once written, so only the
+ * room -> current version mapping can go stale; rotation and deletion announce the room on
+ * pub/sub and every node drops its mapping. The mapping also expires, which bounds
+ * staleness if a message is missed; a stale node merely encrypts with the previous version,
+ * which every node can still decrypt.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RoomKeyStore implements MessageListener {
+
+    public static final String INVALIDATION_CHANNEL = "encryption:room-keys";
+    private static final int MAX_ROTATION_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MasterKeyService masterKeyService;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${encryption.key-cache.max-size:10000}")
+    private long maxCachedKeys;
+
+    @Value("${encryption.key-cache.current-version-ttl-ms:300000}")
+    private long currentVersionTtlMs;
+
+    private Cache<RoomKeyId, SecretKey> keys;
+    private Cache<String, Integer> currentVersions;
+
+    @PostConstruct
+    public void init() {
+        keys = Caffeine.newBuilder()
+                .maximumSize(maxCachedKeys)
+                .recordStats()
+                .build();
+        currentVersions = Caffeine.newBuilder()
+                .maximumSize(maxCachedKeys)
+                .expireAfterWrite(Duration.ofMillis(currentVersionTtlMs))
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, keys, "encryption.room-keys");
+        listenerContainer.addMessageListener(this, new ChannelTopic(INVALIDATION_CHANNEL));
+
+        log.info("Room key store initialized: up to {} cached keys", maxCachedKeys);
+    }
+
+    /**
+     * The key new messages in the room are encrypted with
+     */
+    public VersionedKey currentKey(String roomId) {
+        Integer version = currentVersions.get(roomId, this::loadCurrentVersion);
+        if (version == null) {
+            throw new RuntimeException("Room key not found for: " + roomId);
+        }
+        return new VersionedKey(version, key(roomId, version));
+    }
+
+    /**
+     * A specific key version, for decrypting messages written under it
+     */
+    public SecretKey key(String roomId, int version) {
+        SecretKey key = keys.get(new RoomKeyId(roomId, version), this::loadKey);
+        if (key == null) {
+            throw new RuntimeException("Room key version " + version + " not found for: " + roomId);
+        }
+        return key;
+    }
+
+    public boolean hasKey(String roomId) {
+        return currentVersions.get(roomId, this::loadCurrentVersion) != null;
+    }
+
+    /**
+     * Add a new key version and make it current. Concurrent rotations each get their own version.
+     */
+    public int rotate(String roomId) {
+        for (int attempt = 0; attempt < MAX_ROTATION_ATTEMPTS; attempt++) {
+            Integer current = loadCurrentVersion(roomId);
+            int version = current == null ? 1 : current + 1;
+            SecretKey key = generateKey();
+
+            RoomKey roomKey = RoomKey.builder()
+                    .roomId(roomId)
+                    .version(version)
+                    .wrappedKey(masterKeyService.wrap(key))
+                    .createdAt(LocalDateTime.now())
+                    .build();
+
+            try {
+                mongoTemplate.insert(roomKey);
+            } catch (DuplicateKeyException e) {
+                continue;   // Another node rotated at the same time; take the next version
+            }
+
+            keys.put(new RoomKeyId(roomId, version), key);
+            currentVersions.put(roomId, version);
+            publishInvalidation(roomId);
+
+            log.info("Room {} key rotated to version {}", roomId, version);
+            return version;
+        }
+        throw new IllegalStateException("Could not rotate key for room " + roomId + ": too much contention");
+    }
+
+    /**
+     * Remove every version (room deleted); its messages become unreadable
+     */
+    public void deleteKeys(String roomId) {
+        mongoTemplate.remove(Query.query(Criteria.where("roomId").is(roomId)), RoomKey.class);
+        evict(roomId);
+        publishInvalidation(roomId);
+        log.debug("Removed room keys for: {}", roomId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body != null) {
+                evict(body.toString());
+            }
+        } catch (Exception e) {
+            log.error("Failed to handle room key invalidation: {}", e.getMessage());
+        }
+    }
+
+    public record VersionedKey(int version, SecretKey key) {
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private Integer loadCurrentVersion(String roomId) {
+        RoomKey latest = mongoTemplate.findOne(
+                Query.query(Criteria.where("roomId").is(roomId)).with(Sort.by(Sort.Direction.DESC, "version")),
+                RoomKey.class);
+        return latest != null ? latest.getVersion() : null;
+    }
+
+    private SecretKey loadKey(RoomKeyId id) {
+        RoomKey roomKey = mongoTemplate.findOne(
+                Query.query(Criteria.where("roomId").is(id.roomId()).and("version").is(id.version())),
+                RoomKey.class);
+        return roomKey != null ? masterKeyService.unwrap(roomKey.getWrappedKey()) : null;
+    }
+
+    private SecretKey generateKey() {
+        try {
+            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+            keyGen.init(256);
+            return keyGen.generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("AES not available", e);
+        }
+    }
+
+    private void evict(String roomId) {
+        currentVersions.invalidate(roomId);
+        // Rare (rotation or deletion), so a scan of the cached keys is fine
+        keys.asMap().keySet().removeIf(id -> id.roomId().equals(roomId));
+    }
+
+    private void publishInvalidation(String roomId) {
+        try {
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, roomId);
+        } catch (Exception e) {
+            log.error("Failed to publish room key invalidation for {}: {}", roomId, e.getMessage());
+        }
+    }
+
+    private record RoomKeyId(String roomId, int version) {
+    }
+}
@@ -5,10 +5,12 @@ import com.harsh.chat.entity.MessageStatus;
 import com.harsh.chat.payload.ReplyDTO;
 import com.harsh.chat.payload.MessageRequest;
 import com.harsh.chat.payload.MessageResponse;
+import com.harsh.chat.payload.ThreadPageResponse;
+import com.harsh.chat.payload.ThreadSummaryDTO;
 import com.harsh.chat.repositories.MessageRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
+import org.bson.types.ObjectId;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
@@ -16,8 +18,11 @@ import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.Base64;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -28,6 +33,10 @@ public class ThreadService {
     private final MessageRepository messageRepository;
     private final SimpMessagingTemplate messagingTemplate;
     private final ChatService chatService;
+    private final RedisService redisService;
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final Sort THREAD_ORDER = Sort.by("timestamp").ascending().and(Sort.by("id").ascending());
 
     /**
      * Reply to a message (create thread)
@@ -60,7 +69,10 @@ public class ThreadService {
         parentMessage.addReply(savedReply.getId());
         messageRepository.save(parentMessage);
 
+        redisService.recordThreadReply(parentMessageId, savedReply, parentMessage.getReplyCount());
+
         MessageResponse response = MessageResponse.from(savedReply);
+        response.setParentReplyCount(parentMessage.getReplyCount());
 
         ReplyDTO replyDTO = ReplyDTO.builder()
                 .type("REPLY")
@@ -78,6 +90,7 @@ public class ThreadService {
                 .hasReplies(true)
                 .build();
 
+        // Full frame for legacy /replies subscribers; compact subscribers rely on the room frame below
         messagingTemplate.convertAndSend("/topic/room/" + roomId + "/replies", replyDTO);
         messagingTemplate.convertAndSend("/topic/room/" + roomId, response);
 
@@ -87,33 +100,99 @@ public class ThreadService {
     }
 
     /**
-     * Get all replies for a message (thread)
+     * Get replies for a message (thread) by page number
      */
     public List<MessageResponse> getThreadReplies(String parentMessageId, int page, int size) {
         log.info("Getting replies for message: {}, page: {}, size: {}", parentMessageId, page, size);
 
-        Pageable pageable = PageRequest.of(page, size, Sort.by("timestamp").ascending());
-
-        Page<Message> repliesPage = messageRepository.findByParentMessageId(parentMessageId, pageable);
+        Pageable pageable = PageRequest.of(page, clampSize(size), THREAD_ORDER);
 
-        return repliesPage.getContent().stream()
+        return messageRepository.findByParentMessageIdOrderByTimestampAsc(parentMessageId, pageable).stream()
                 .map(MessageResponse::from)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Get the next page of replies after a cursor (keyset paging, no skip/count)
+     */
+    public ThreadPageResponse getThreadRepliesAfter(String parentMessageId, String cursor, int size) {
+        int pageSize = clampSize(size);
+        log.debug("Getting replies for message: {}, cursor: {}, size: {}", parentMessageId, cursor, pageSize);
+
+        // Fetch one extra row to know whether another page exists
+        Pageable pageable = PageRequest.of(0, pageSize + 1, THREAD_ORDER);
+
+        List<Message> replies;
+        if (cursor == null || cursor.isBlank()) {
+            replies = messageRepository.findByParentMessageIdOrderByTimestampAsc(parentMessageId, pageable);
+        } else {
+            ThreadCursor position = decodeCursor(cursor);
+            replies = messageRepository.findRepliesAfter(
+                    parentMessageId, position.timestamp(), new ObjectId(position.messageId()), pageable);
+        }
+
+        boolean hasMore = replies.size() > pageSize;
+        if (hasMore) {
+            replies = replies.subList(0, pageSize);
+        }
+
+        String nextCursor = hasMore ? encodeCursor(replies.get(replies.size() - 1)) : null;
+
+        return ThreadPageResponse.builder()
+                .parentMessageId(parentMessageId)
+                .replies(replies.stream().map(MessageResponse::from).collect(Collectors.toList()))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .build();
+    }
+
+    /**
+     * Get thread summary (count, last reply, participants), served from Redis when possible
+     */
+    public ThreadSummaryDTO getThreadSummary(String messageId) {
+        ThreadSummaryDTO cached = redisService.getCachedThreadSummary(messageId);
+        if (cached != null) {
+            return cached;
+        }
+
+        Message message = messageRepository.findThreadInfoById(messageId)
+                .orElseThrow(() -> new RuntimeException("Message not found: " + messageId));
+
+        ThreadSummaryDTO.ThreadSummaryDTOBuilder builder = ThreadSummaryDTO.builder()
+                .parentMessageId(messageId)
+                .roomId(message.getRoomId())
+                .replyCount(message.getReplyCount())
+                .participants(Set.of());
+
+        if (message.getReplyCount() > 0) {
+            messageRepository.findFirstByParentMessageIdOrderByTimestampDesc(messageId).ifPresent(last -> builder
+                    .lastReplyId(last.getId())
+                    .lastReplySender(last.getSender())
+                    .lastReplyContent(ThreadSummaryDTO.preview(last.getContent()))
+                    .lastReplyAt(last.getTimestamp()));
+
+            builder.participants(messageRepository.findReplySendersByParentMessageId(messageId).stream()
+                    .map(Message::getSender)
+                    .collect(Collectors.toSet()));
+        }
+
+        ThreadSummaryDTO summary = builder.build();
+        redisService.cacheThreadSummary(summary);
+        return summary;
+    }
+
     /**
      * Get thread info for a message
      */
     public ReplyDTO getThreadInfo(String messageId) {
-        Message message = messageRepository.findById(messageId)
-                .orElseThrow(() -> new RuntimeException("Message not found: " + messageId));
+        ThreadSummaryDTO summary = getThreadSummary(messageId);
 
         return ReplyDTO.builder()
                 .type("THREAD_UPDATE")
                 .parentMessageId(messageId)
-                .roomId(message.getRoomId())
-                .replyCount(message.getReplyCount())
-                .hasReplies(message.isHasReplies())
+                .roomId(summary.getRoomId())
+                .replyCount(summary.getReplyCount())
+                .hasReplies(summary.getReplyCount() > 0)
                 .timestamp(LocalDateTime.now())
                 .build();
     }
@@ -140,6 +219,9 @@ public class ThreadService {
                 parent.removeReply(replyId);
                 messageRepository.save(parent);
 
+                // Last reply and participants may have changed, rebuild lazily on next read
+                redisService.evictThreadSummary(parentId);
+
                 ReplyDTO update = ReplyDTO.builder()
                         .type("THREAD_UPDATE")
                         .parentMessageId(parentId)
@@ -150,9 +232,34 @@ public class ThreadService {
                         .build();
 
                 messagingTemplate.convertAndSend("/topic/room/" + parent.getRoomId() + "/replies", update);
+                messagingTemplate.convertAndSend("/topic/room/" + parent.getRoomId() + "/thread-updates", update);
             }
         }
 
         log.info("Reply deleted: {}", replyId);
     }
-}
\ No newline at end of file
+
+    // ============== CURSOR HELPERS ==============
+
+    private record ThreadCursor(LocalDateTime timestamp, String messageId) {
+    }
+
+    private int clampSize(int size) {
+        return Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+    }
+
+    private String encodeCursor(Message message) {
+        String raw = message.getTimestamp() + "|" + message.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private ThreadCursor decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new ThreadCursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid thread cursor");
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.harsh.chat.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.jsonwebtoken.Claims;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Resolves the UserDetails behind a verified token.
+ * In stateless mode roles and enabled state come from the signed claims, so no
+ * database lookup happens. Tokens without those claims fall back to a cached
+ * lookup. Both paths honour the revocation deny-list.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenAuthenticationService {
+
+    private final CustomUserDetailsService userDetailsService;
+    private final TokenRevocationService revocationService;
+
+    @Value("${jwt.stateless:true}")
+    private boolean stateless;
+
+    @Value("${jwt.user-cache.max-size:10000}")
+    private long userCacheMaxSize;
+
+    @Value("${jwt.user-cache.ttl:300000}")
+    private long userCacheTtlMs;
+
+    private Cache<String, UserDetails> userCache;
+
+    @PostConstruct
+    public void init() {
+        userCache = Caffeine.newBuilder()
+                .maximumSize(userCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(userCacheTtlMs))
+                .build();
+
+        revocationService.onRevocation(userCache::invalidate);
+        log.info("Token authentication initialized (stateless: {})", stateless);
+    }
+
+    /**
+     * Returns the user for the claims, or null if the token was revoked or the user is disabled
+     */
+    public UserDetails loadUser(Claims claims) {
+        String username = claims.getSubject();
+        if (username == null) {
+            return null;
+        }
+
+        if (revocationService.isRevoked(username, JwtService.issuedAtMillis(claims))) {
+            log.warn("Rejected revoked token for user: {}", username);
+            return null;
+        }
+
+        UserDetails userDetails = stateless && claims.containsKey(JwtService.ROLES_CLAIM)
+                ? fromClaims(username, claims)
+                : userCache.get(username, userDetailsService::loadUserByUsername);
+
+        return userDetails.isEnabled() ? userDetails : null;
+    }
+
+    private UserDetails fromClaims(String username, Claims claims) {
+        List<?> roles = claims.get(JwtService.ROLES_CLAIM, List.class);
+        boolean enabled = !Boolean.FALSE.equals(claims.get(JwtService.ENABLED_CLAIM, Boolean.class));
+
+        return User.builder()
+                .username(username)
+                .password("")
+                .authorities(roles.stream()
+                        .map(Object::toString)
+                        .map(SimpleGrantedAuthority::new)
+                        .toList())
+                .disabled(!enabled)
+                .build();
+    }
+}
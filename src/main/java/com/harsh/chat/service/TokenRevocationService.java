@@ -0,0 +1,135 @@
+package com.harsh.chat.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Deny-list of users whose tokens were revoked.
+ * Tokens issued before a user's revocation time are rejected. The list lives in a
+ * Redis hash and is mirrored in memory on every node; revocations are fanned out
+ * over pub/sub so lookups on the request path never touch Redis.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TokenRevocationService implements MessageListener {
+
+    public static final String REVOCATION_CHANNEL = "auth:revocations";
+    private static final String REVOKED_USERS_KEY = "auth:revoked:users";
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${jwt.refresh-expiration:604800000}")
+    private long refreshExpiration;
+
+    // username -> epoch millis; tokens issued at or before this are revoked
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+    private final List<Consumer<String>> revocationListeners = new CopyOnWriteArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(this, new ChannelTopic(REVOCATION_CHANNEL));
+        loadDenyList();
+    }
+
+    /**
+     * Revoke every token issued to a user up to now
+     */
+    public void revokeUser(String username) {
+        // Compared with the tokens' millisecond issue time (JwtService.issuedAtMillis)
+        long revokedAt = System.currentTimeMillis();
+        applyRevocation(username, revokedAt);
+
+        try {
+            redisTemplate.opsForHash().put(REVOKED_USERS_KEY, username, String.valueOf(revokedAt));
+            redisTemplate.convertAndSend(REVOCATION_CHANNEL, username + ":" + revokedAt);
+            log.info("Revoked tokens for user: {}", username);
+        } catch (Exception e) {
+            log.error("Failed to publish token revocation for {}: {}", username, e.getMessage());
+        }
+    }
+
+    /**
+     * True if the user's tokens issued at this time (epoch millis) were revoked. A tie counts as
+     * revoked: a token minted in the same millisecond may predate the revocation.
+     */
+    public boolean isRevoked(String username, long issuedAtMillis) {
+        Long cutoff = revokedBefore.get(username);
+        if (cutoff == null) {
+            return false;
+        }
+        return issuedAtMillis <= cutoff;
+    }
+
+    /**
+     * Register a callback invoked with the username whenever a revocation arrives
+     */
+    public void onRevocation(Consumer<String> listener) {
+        revocationListeners.add(listener);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            Object body = redisTemplate.getValueSerializer().deserialize(message.getBody());
+            if (body == null) {
+                return;
+            }
+
+            String payload = body.toString();
+            int separator = payload.lastIndexOf(':');
+            String username = payload.substring(0, separator);
+            long revokedAt = Long.parseLong(payload.substring(separator + 1));
+
+            applyRevocation(username, revokedAt);
+            log.debug("Received token revocation for user: {}", username);
+        } catch (Exception e) {
+            log.error("Failed to handle revocation message: {}", e.getMessage());
+        }
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private void applyRevocation(String username, long revokedAt) {
+        revokedBefore.merge(username, revokedAt, Math::max);
+        revocationListeners.forEach(listener -> listener.accept(username));
+    }
+
+    private void loadDenyList() {
+        try {
+            long oldestRelevant = System.currentTimeMillis() - refreshExpiration;
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(REVOKED_USERS_KEY);
+
+            for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+                String username = entry.getKey().toString();
+                long revokedAt = Long.parseLong(entry.getValue().toString());
+
+                // Every token issued before this point has expired anyway
+                if (revokedAt < oldestRelevant) {
+                    redisTemplate.opsForHash().delete(REVOKED_USERS_KEY, username);
+                } else {
+                    revokedBefore.merge(username, revokedAt, Math::max);
+                }
+            }
+
+            log.info("Loaded {} revoked users", revokedBefore.size());
+        } catch (Exception e) {
+            log.error("Failed to load token deny-list: {}", e.getMessage());
+        }
+    }
+}
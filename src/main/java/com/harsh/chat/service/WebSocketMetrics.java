@@ -0,0 +1,523 @@
+package com.harsh.chat.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.annotation.support.SimpAnnotationMethodMessageHandler;
+import org.springframework.messaging.simp.user.SimpSession;
+import org.springframework.messaging.simp.user.SimpSubscription;
+import org.springframework.messaging.simp.user.SimpUser;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.PathMatcher;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.config.WebSocketMessageBrokerStats;
+import org.springframework.web.socket.messaging.StompSubProtocolHandler;
+import org.springframework.web.socket.messaging.SubProtocolWebSocketHandler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * WebSocket session and broker metrics, to find slow consumers before they turn into
+ * disconnect storms.
+ * A slow consumer is a session whose current socket write has been blocked longer than
+ * slow-send-threshold-ms. Messages for it pile up in Spring's send buffer until the buffer
+ * (512KB) or the send time limit (20s) is exceeded and the session is closed; such closes
+ * are counted by reason. Heartbeat misses are sessions the broker dropped because the
+ * client went silent. Inbound messages are tagged with the @MessageMapping they hit, since
+ * their destinations are whatever the client sends.
+ * Meters: websocket.sessions, websocket.sessions.slow (now), websocket.slow.consumers (ever;
+ * its own name so it does not share a Prometheus family with the gauge),
+ * websocket.sessions.closed.limit{reason}, websocket.send.time,
+ * websocket.messages{direction,destination}, websocket.heartbeat.missed,
+ * websocket.subscriptions, websocket.channel.queue{channel}, and Spring's
+ * WebSocketMessageBrokerStats as websocket.stats.*. A snapshot is served at /actuator/websocket.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class WebSocketMetrics {
+
+    public static final String INBOUND = "inbound";
+    public static final String OUTBOUND = "outbound";
+
+    private static final int TOP_N = 20;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${metrics.websocket.slow-send-threshold-ms:1000}")
+    private long slowSendThresholdMs;
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    private Meter.MeterProvider<Counter> messageCounters;
+    private Meter.MeterProvider<Counter> limitCloseCounters;
+    private Counter heartbeatMissedCounter;
+    private Counter slowConsumerCounter;
+    private Timer sendTimer;
+
+    private WebSocketMessageBrokerStats brokerStats;
+    private SimpUserRegistry userRegistry;
+    private List<String> inboundPatterns = List.of();
+    private Collection<String> applicationPrefixes = List.of();
+    private volatile PathMatcher pathMatcher;   // Set last: the mappings above are ready once it is
+    private final Map<String, ThreadPoolTaskExecutor> channelExecutors = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        messageCounters = Counter.builder("websocket.messages")
+                .description("STOMP messages by direction and destination prefix")
+                .withRegistry(meterRegistry);
+        limitCloseCounters = Counter.builder("websocket.sessions.closed.limit")
+                .description("Sessions closed for exceeding the send buffer or send time limit")
+                .withRegistry(meterRegistry);
+        heartbeatMissedCounter = Counter.builder("websocket.heartbeat.missed")
+                .description("Sessions dropped by the broker after missing client heartbeats")
+                .register(meterRegistry);
+        slowConsumerCounter = Counter.builder("websocket.slow.consumers")
+                .description("Sessions that have had a socket write blocked past the slow threshold")
+                .register(meterRegistry);
+        sendTimer = Timer.builder("websocket.send.time")
+                .description("Time to write one frame to a client socket")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100_000))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+
+        Gauge.builder("websocket.sessions", sessions, Map::size)
+                .description("Open WebSocket sessions on this node")
+                .register(meterRegistry);
+        Gauge.builder("websocket.sessions.slow", this, WebSocketMetrics::currentSlowConsumers)
+                .description("Sessions whose current socket write is blocked past the slow threshold")
+                .register(meterRegistry);
+
+        log.info("WebSocket metrics initialized: slow consumer after {} ms blocked in a send", slowSendThresholdMs);
+    }
+
+    /**
+     * Bind the broker's own stats once it exists; the broker configuration depends on the
+     * WebSocket configurer that depends on this bean, so they cannot be injected
+     */
+    @EventListener
+    public void onContextRefreshed(ContextRefreshedEvent event) {
+        ApplicationContext context = event.getApplicationContext();
+        if (brokerStats != null) {
+            return;
+        }
+
+        brokerStats = context.getBeanProvider(WebSocketMessageBrokerStats.class).getIfAvailable();
+        userRegistry = context.getBeanProvider(SimpUserRegistry.class).getIfAvailable();
+        bindInboundMappings(context);
+        bindExecutor(context, INBOUND, "clientInboundChannelExecutor");
+        bindExecutor(context, OUTBOUND, "clientOutboundChannelExecutor");
+
+        if (userRegistry != null) {
+            Gauge.builder("websocket.subscriptions", userRegistry, registry -> countSubscriptions(registry, null))
+                    .description("Subscriptions held by sessions on this node")
+                    .register(meterRegistry);
+        }
+
+        if (brokerStats != null) {
+            sessionStat("websocket.stats.sessions.websocket", "Current native WebSocket sessions",
+                    SubProtocolWebSocketHandler.Stats::getWebSocketSessions);
+            sessionStat("websocket.stats.sessions.http-streaming", "Current SockJS streaming sessions",
+                    SubProtocolWebSocketHandler.Stats::getHttpStreamingSessions);
+            sessionStat("websocket.stats.sessions.http-polling", "Current SockJS polling sessions",
+                    SubProtocolWebSocketHandler.Stats::getHttpPollingSessions);
+            sessionCounter("websocket.stats.sessions.total", "Sessions opened",
+                    SubProtocolWebSocketHandler.Stats::getTotalSessions);
+            sessionCounter("websocket.stats.sessions.limit-exceeded", "Sessions closed for exceeding send limits",
+                    SubProtocolWebSocketHandler.Stats::getLimitExceededSessions);
+            sessionCounter("websocket.stats.sessions.no-messages", "Sessions closed for sending nothing after connecting",
+                    SubProtocolWebSocketHandler.Stats::getNoMessagesReceivedSessions);
+            sessionCounter("websocket.stats.sessions.transport-error", "Sessions closed by transport errors",
+                    SubProtocolWebSocketHandler.Stats::getTransportErrorSessions);
+            stompCounter("websocket.stats.stomp.connect", "STOMP CONNECT frames received",
+                    StompSubProtocolHandler.Stats::getTotalConnect);
+            stompCounter("websocket.stats.stomp.connected", "STOMP CONNECTED frames sent",
+                    StompSubProtocolHandler.Stats::getTotalConnected);
+            stompCounter("websocket.stats.stomp.disconnect", "STOMP DISCONNECT frames received",
+                    StompSubProtocolHandler.Stats::getTotalDisconnect);
+        }
+    }
+
+    // ============== SESSION EVENTS ==============
+
+    public void sessionOpened(String sessionId, String user) {
+        sessions.put(sessionId, new SessionState(user));
+    }
+
+    public void messageReceived(String sessionId) {
+        SessionState state = sessions.get(sessionId);
+        if (state != null) {
+            state.markReceived();
+        }
+    }
+
+    /**
+     * The server is closing the session. Taken before the close goes out, because the blocked
+     * write that tripped a limit may finish (and reset the send timer) before the session is
+     * reported closed.
+     */
+    public void closeStarted(String sessionId, CloseStatus status) {
+        SessionState state = sessions.get(sessionId);
+        if (state != null && CloseStatus.SESSION_NOT_RELIABLE.equalsCode(status)) {
+            state.closeStarted(System.nanoTime());
+        }
+    }
+
+    public void sessionClosed(String sessionId, CloseStatus status) {
+        SessionState state = sessions.remove(sessionId);
+        if (state == null || !CloseStatus.SESSION_NOT_RELIABLE.equalsCode(status)) {
+            return;
+        }
+
+        // Spring also closes sessions that never sent a frame (no CONNECT in time) this way;
+        // those are websocket.stats.sessions.no-messages, not send limit closes
+        long blockedMs = state.blockedAtCloseMillis();
+        if (!state.received() || blockedMs < 0) {
+            return;
+        }
+
+        // Spring closes both limit violations the same way; a write blocked past the time
+        // limit when the close started means the send time limit tripped, otherwise the
+        // buffer filled up
+        String reason = blockedMs >= state.sendTimeLimitMs() ? "send_time" : "buffer_size";
+        limitCloseCounters.withTags("reason", reason).increment();
+        log.warn("WebSocket session {} ({}) closed: {} limit exceeded, write blocked {} ms",
+                sessionId, state.user(), reason, blockedMs);
+    }
+
+    public void sendStarted(String sessionId, long sendTimeLimitMs) {
+        SessionState state = sessions.get(sessionId);
+        if (state != null) {
+            state.sendStarted(System.nanoTime(), sendTimeLimitMs);
+        }
+    }
+
+    public void sendFinished(String sessionId) {
+        SessionState state = sessions.get(sessionId);
+        if (state == null) {
+            return;
+        }
+
+        long nanos = state.sendFinished(System.nanoTime());
+        sendTimer.record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos >= TimeUnit.MILLISECONDS.toNanos(slowSendThresholdMs) && state.markSlow()) {
+            slowConsumerCounter.increment();
+            log.warn("Slow WebSocket consumer: session {} ({}) took {} ms for one write",
+                    sessionId, state.user(), TimeUnit.NANOSECONDS.toMillis(nanos));
+        }
+    }
+
+    // ============== TRAFFIC ==============
+
+    public void recordMessage(String direction, String destination) {
+        String tag = INBOUND.equals(direction) ? inboundDestination(destination) : destinationPrefix(destination);
+        messageCounters.withTags("direction", direction, "destination", tag).increment();
+    }
+
+    public void recordHeartbeatMiss(String sessionId) {
+        heartbeatMissedCounter.increment();
+        SessionState state = sessions.get(sessionId);
+        log.info("WebSocket session {} ({}) missed heartbeats, disconnecting",
+                sessionId, state != null ? state.user() : "unknown");
+    }
+
+    /**
+     * Inbound destinations are chosen by the client, so they are tagged with the
+     * @MessageMapping pattern they hit (/app/sendMessage/{roomId}); anything else is "other"
+     */
+    String inboundDestination(String destination) {
+        if (destination == null || pathMatcher == null) {
+            return "other";
+        }
+        for (String prefix : applicationPrefixes) {
+            if (!destination.startsWith(prefix)) {
+                continue;
+            }
+            String lookup = destination.substring(prefix.length() - 1);
+            for (String pattern : inboundPatterns) {
+                if (pathMatcher.match(pattern, lookup)) {
+                    return prefix.substring(0, prefix.length() - 1) + pattern;
+                }
+            }
+        }
+        return "other";
+    }
+
+    /**
+     * Outbound destination with its variable part collapsed, so tags stay bounded: the third segment
+     * (the room or user id) becomes a star and the -user{sessionId} suffix of resolved user
+     * destinations is dropped
+     */
+    public static String destinationPrefix(String destination) {
+        if (destination == null) {
+            return "none";
+        }
+
+        int userSuffix = destination.indexOf("-user");
+        if (userSuffix != -1) {
+            destination = destination.substring(0, userSuffix);
+        }
+
+        String[] segments = destination.split("/");
+        StringBuilder prefix = new StringBuilder();
+        // segments[0] is empty (leading slash); [1] is the prefix, [2] the kind, [3] its id
+        for (int i = 1; i < segments.length; i++) {
+            prefix.append('/').append(i == 3 ? "*" : segments[i]);
+        }
+        return prefix.isEmpty() ? "/" : prefix.toString();
+    }
+
+    // ============== SNAPSHOT ==============
+
+    /**
+     * Current state for the actuator endpoint
+     */
+    public Map<String, Object> snapshot() {
+        long now = System.nanoTime();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+
+        Map<String, Object> sessionInfo = new LinkedHashMap<>();
+        sessionInfo.put("open", sessions.size());
+        if (brokerStats != null && brokerStats.getWebSocketSessionStats() != null) {
+            SubProtocolWebSocketHandler.Stats stats = brokerStats.getWebSocketSessionStats();
+            sessionInfo.put("websocket", stats.getWebSocketSessions());
+            sessionInfo.put("httpStreaming", stats.getHttpStreamingSessions());
+            sessionInfo.put("httpPolling", stats.getHttpPollingSessions());
+            sessionInfo.put("totalOpened", stats.getTotalSessions());
+            sessionInfo.put("limitExceeded", stats.getLimitExceededSessions());
+            sessionInfo.put("noMessagesReceived", stats.getNoMessagesReceivedSessions());
+            sessionInfo.put("transportErrors", stats.getTransportErrorSessions());
+        }
+        snapshot.put("sessions", sessionInfo);
+
+        List<Map<String, Object>> slow = sessions.entrySet().stream()
+                .filter(entry -> entry.getValue().blockedMillis(now) >= slowSendThresholdMs)
+                .sorted(Comparator.comparingLong(
+                        (Map.Entry<String, SessionState> entry) -> entry.getValue().blockedMillis(now)).reversed())
+                .limit(TOP_N)
+                .map(entry -> Map.<String, Object>of(
+                        "sessionId", entry.getKey(),
+                        "user", entry.getValue().user(),
+                        "blockedMs", entry.getValue().blockedMillis(now)))
+                .toList();
+        snapshot.put("slowConsumers", Map.of(
+                "current", slow.size(),
+                "total", (long) slowConsumerCounter.count(),
+                "thresholdMs", slowSendThresholdMs,
+                "sessions", slow));
+
+        snapshot.put("limitCloses", countsByTag("websocket.sessions.closed.limit", "reason"));
+        snapshot.put("heartbeatMisses", (long) heartbeatMissedCounter.count());
+
+        if (userRegistry != null) {
+            Map<String, Integer> fanOut = new HashMap<>();
+            int total = countSubscriptions(userRegistry, fanOut);
+            Map<String, Integer> top = new LinkedHashMap<>();
+            fanOut.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                    .limit(TOP_N)
+                    .forEach(entry -> top.put(entry.getKey(), entry.getValue()));
+            snapshot.put("subscriptions", Map.of("total", total, "topDestinations", top));
+        }
+
+        Map<String, Object> channels = new LinkedHashMap<>();
+        channelExecutors.forEach((channel, executor) -> channels.put(channel, Map.of(
+                "queued", executor.getThreadPoolExecutor().getQueue().size(),
+                "active", executor.getActiveCount(),
+                "poolSize", executor.getPoolSize())));
+        snapshot.put("channels", channels);
+
+        Map<String, Object> messages = new LinkedHashMap<>();
+        messages.put(INBOUND, countsByTag("websocket.messages", "destination", "direction", INBOUND));
+        messages.put(OUTBOUND, countsByTag("websocket.messages", "destination", "direction", OUTBOUND));
+        snapshot.put("messages", messages);
+
+        return snapshot;
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private double currentSlowConsumers() {
+        long now = System.nanoTime();
+        return sessions.values().stream()
+                .filter(state -> state.blockedMillis(now) >= slowSendThresholdMs)
+                .count();
+    }
+
+    /**
+     * Subscriptions on this node, optionally tallied per destination prefix
+     */
+    private static int countSubscriptions(SimpUserRegistry registry, Map<String, Integer> fanOut) {
+        int total = 0;
+        for (SimpUser user : registry.getUsers()) {
+            for (SimpSession session : user.getSessions()) {
+                for (SimpSubscription subscription : session.getSubscriptions()) {
+                    total++;
+                    if (fanOut != null) {
+                        fanOut.merge(subscription.getDestination(), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    private Map<String, Long> countsByTag(String name, String tagKey, String... filterTags) {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        meterRegistry.find(name).tags(filterTags).counters().forEach(counter ->
+                counts.put(counter.getId().getTag(tagKey), (long) counter.count()));
+        return counts;
+    }
+
+    private void bindInboundMappings(ApplicationContext context) {
+        SimpAnnotationMethodMessageHandler handler = context.getBeanProvider(SimpAnnotationMethodMessageHandler.class)
+                .getIfAvailable();
+        if (handler == null) {
+            return;
+        }
+
+        List<String> patterns = new ArrayList<>();
+        handler.getHandlerMethods().keySet()
+                .forEach(mapping -> patterns.addAll(mapping.getDestinationConditions().getPatterns()));
+        inboundPatterns = List.copyOf(patterns);
+        applicationPrefixes = handler.getDestinationPrefixes();
+        pathMatcher = handler.getPathMatcher();
+    }
+
+    private void bindExecutor(ApplicationContext context, String channel, String beanName) {
+        if (!context.containsBean(beanName)) {
+            return;
+        }
+        Object bean = context.getBean(beanName);
+        if (bean instanceof ThreadPoolTaskExecutor executor) {
+            channelExecutors.put(channel, executor);
+            Gauge.builder("websocket.channel.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                    .description("Messages waiting for a channel worker")
+                    .tag("channel", channel)
+                    .register(meterRegistry);
+            Gauge.builder("websocket.channel.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                    .description("Channel workers busy")
+                    .tag("channel", channel)
+                    .register(meterRegistry);
+        }
+    }
+
+    private void sessionStat(String name, String description, ToDoubleFunction<SubProtocolWebSocketHandler.Stats> value) {
+        Gauge.builder(name, brokerStats, stats -> stats.getWebSocketSessionStats() != null
+                        ? value.applyAsDouble(stats.getWebSocketSessionStats()) : 0)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private void sessionCounter(String name, String description, ToDoubleFunction<SubProtocolWebSocketHandler.Stats> value) {
+        FunctionCounter.builder(name, brokerStats, stats -> stats.getWebSocketSessionStats() != null
+                        ? value.applyAsDouble(stats.getWebSocketSessionStats()) : 0)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    private void stompCounter(String name, String description, ToDoubleFunction<StompSubProtocolHandler.Stats> value) {
+        FunctionCounter.builder(name, brokerStats, stats -> stats.getStompSubProtocolStats() != null
+                        ? value.applyAsDouble(stats.getStompSubProtocolStats()) : 0)
+                .description(description)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Per-session send state; the send start is 0 while no write is in progress
+     */
+    private static final class SessionState {
+
+        private final String user;
+        private volatile long sendStartedAt;
+        private volatile long sendTimeLimitMs = Long.MAX_VALUE;
+        private volatile boolean slow;
+        private volatile boolean received;
+        private volatile long blockedAtCloseMs = -1;
+
+        SessionState(String user) {
+            this.user = user != null ? user : "anonymous";
+        }
+
+        String user() {
+            return user;
+        }
+
+        long sendTimeLimitMs() {
+            return sendTimeLimitMs;
+        }
+
+        void sendStarted(long now, long limitMs) {
+            sendTimeLimitMs = limitMs;
+            sendStartedAt = now;
+        }
+
+        long sendFinished(long now) {
+            long started = sendStartedAt;
+            sendStartedAt = 0;
+            return started == 0 ? 0 : now - started;
+        }
+
+        long blockedMillis(long now) {
+            long started = sendStartedAt;
+            return started == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(now - started);
+        }
+
+        void markReceived() {
+            received = true;
+        }
+
+        boolean received() {
+            return received;
+        }
+
+        void closeStarted(long now) {
+            if (blockedAtCloseMs < 0) {
+                blockedAtCloseMs = blockedMillis(now);
+            }
+        }
+
+        /**
+         * How long the current write had been blocked when the server started closing, or -1
+         * if the server did not close the session itself
+         */
+        long blockedAtCloseMillis() {
+            return blockedAtCloseMs;
+        }
+
+        /**
+         * Returns true the first time the session is found slow
+         */
+        boolean markSlow() {
+            if (slow) {
+                return false;
+            }
+            slow = true;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.harsh.chat.storage;
+
+import org.springframework.core.io.Resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Where attachment bytes live. Keys are "<category>/<file name>", e.g. "images/<sha256>.jpg"
+ * or "thumbnails/thumb_<sha256>.jpg". The backend is chosen with storage.type
+ * (filesystem or s3); everything above this interface only deals in keys.
+ */
+public interface BlobStore {
+
+    /**
+     * Store a local file under the key. The source may be moved rather than copied,
+     * so callers must not rely on it afterwards.
+     */
+    void put(String key, Path source, String contentType) throws IOException;
+
+    /**
+     * The stored object; exists() is false if there is none
+     */
+    Resource getResource(String key);
+
+    /**
+     * A local file with the object's content, for decoders that need one.
+     * Closing it removes the file if it was a temporary copy.
+     */
+    LocalFile toLocalFile(String key) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * A time-limited URL the client can download from directly, bypassing the application,
+     * or empty if this store does not support it
+     */
+    Optional<URI> presignedUrl(String key, String contentDisposition, String cacheControl);
+
+    /**
+     * Storage key for a stored path: new records hold keys, records from before the blob
+     * store hold absolute paths under the upload directory
+     */
+    static String keyOf(String path) {
+        Path stored = Path.of(path);
+        Path parent = stored.getParent();
+        return parent == null
+                ? stored.getFileName().toString()
+                : parent.getFileName() + "/" + stored.getFileName();
+    }
+
+    /**
+     * Implemented by resources that can read part of an object without fetching what
+     * precedes it (e.g. an HTTP range GET)
+     */
+    interface RangeReadable {
+
+        InputStream getInputStream(long offset, long length) throws IOException;
+    }
+
+    record LocalFile(Path path, boolean temporary) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            if (temporary) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.harsh.chat.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Blobs as files under file.upload-dir, one directory per category. Files are served with
+ * sendfile by FileServingService; there are no presigned URLs.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "filesystem", matchIfMissing = true)
+@Slf4j
+public class FileSystemBlobStore implements BlobStore {
+
+    @Value("${file.upload-dir:./uploads}")
+    private String uploadDir;
+
+    private Path root;
+
+    @PostConstruct
+    public void init() {
+        root = Paths.get(uploadDir).toAbsolutePath().normalize();
+        log.info("Filesystem blob store at: {}", root);
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType) throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        try {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    @Override
+    public Resource getResource(String key) {
+        return new FileSystemResource(resolve(key));
+    }
+
+    @Override
+    public LocalFile toLocalFile(String key) {
+        return new LocalFile(resolve(key), false);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, String contentDisposition, String cacheControl) {
+        return Optional.empty();
+    }
+
+    // ============== PRIVATE HELPER METHODS ==============
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid storage key: " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,269 @@
+package com.harsh.chat.storage;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.DefaultCredentialsProvider;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Blobs as objects in an S3-compatible bucket (AWS S3, MinIO, R2...). With an endpoint
+ * override and path-style access it runs against a local MinIO container.
+ * Downloads are answered with presigned GET URLs so media bytes never pass through the JVM;
+ * when presigning is off, objects are streamed through the application instead.
+ */
+@Component
+@ConditionalOnProperty(name = "storage.type", havingValue = "s3")
+@Slf4j
+public class S3BlobStore implements BlobStore {
+
+    @Value("${storage.s3.endpoint:}")
+    private String endpoint;
+
+    @Value("${storage.s3.region:us-east-1}")
+    private String region;
+
+    @Value("${storage.s3.bucket}")
+    private String bucket;
+
+    @Value("${storage.s3.access-key:}")
+    private String accessKey;
+
+    @Value("${storage.s3.secret-key:}")
+    private String secretKey;
+
+    @Value("${storage.s3.path-style:true}")
+    private boolean pathStyle;
+
+    @Value("${storage.s3.presign-downloads:true}")
+    private boolean presignDownloads;
+
+    @Value("${storage.s3.presign-ttl-seconds:900}")
+    private long presignTtlSeconds;
+
+    private S3Client client;
+    private S3Presigner presigner;
+
+    @PostConstruct
+    public void init() {
+        // Static keys for MinIO and the like; otherwise the standard AWS credential chain
+        AwsCredentialsProvider credentials = accessKey.isBlank()
+                ? DefaultCredentialsProvider.create()
+                : StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey));
+        S3Configuration s3Configuration = S3Configuration.builder()
+                .pathStyleAccessEnabled(pathStyle)
+                .build();
+
+        var clientBuilder = S3Client.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(s3Configuration);
+        var presignerBuilder = S3Presigner.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentials)
+                .serviceConfiguration(s3Configuration);
+
+        if (!endpoint.isBlank()) {
+            clientBuilder.endpointOverride(URI.create(endpoint));
+            presignerBuilder.endpointOverride(URI.create(endpoint));
+        }
+
+        client = clientBuilder.build();
+        presigner = presignerBuilder.build();
+
+        log.info("S3 blob store: bucket {} at {} (presigned downloads: {})",
+                bucket, endpoint.isBlank() ? "AWS " + region : endpoint, presignDownloads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        presigner.close();
+        client.close();
+    }
+
+    @Override
+    public void put(String key, Path source, String contentType) throws IOException {
+        try {
+            client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .build(),
+                    RequestBody.fromFile(source));
+        } catch (SdkException e) {
+            throw new IOException("Could not store " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Resource getResource(String key) {
+        return new S3Resource(key);
+    }
+
+    @Override
+    public LocalFile toLocalFile(String key) throws IOException {
+        Path temp = Files.createTempFile("blob-", null);
+        try (InputStream in = getResource(key).getInputStream()) {
+            Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        return new LocalFile(temp, true);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        try {
+            client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(key).build());
+        } catch (SdkException e) {
+            throw new IOException("Could not delete " + key + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Optional<URI> presignedUrl(String key, String contentDisposition, String cacheControl) {
+        if (!presignDownloads) {
+            return Optional.empty();
+        }
+
+        GetObjectRequest request = GetObjectRequest.builder()
+                .bucket(bucket)
+                .key(key)
+                .responseContentDisposition(contentDisposition)
+                .responseCacheControl(cacheControl)
+                .build();
+
+        try {
+            return Optional.of(presigner.presignGetObject(GetObjectPresignRequest.builder()
+                            .signatureDuration(Duration.ofSeconds(presignTtlSeconds))
+                            .getObjectRequest(request)
+                            .build())
+                    .url()
+                    .toURI());
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException("Presigned URL is not a valid URI", e);
+        }
+    }
+
+    /**
+     * Object handle that issues a HEAD on first metadata access and a GET when read
+     */
+    private class S3Resource extends AbstractResource implements RangeReadable {
+
+        private final String key;
+        private HeadObjectResponse head;
+
+        S3Resource(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean exists() {
+            try {
+                head();
+                return true;
+            } catch (FileNotFoundException e) {
+                return false;
+            } catch (IOException e) {
+                // Resource contract: false when existence cannot be determined
+                log.warn("Could not check {}: {}", getDescription(), e.getMessage());
+                return false;
+            }
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return head().contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return head().lastModified().toEpochMilli();
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return get(GetObjectRequest.builder().bucket(bucket).key(key).build());
+        }
+
+        @Override
+        public InputStream getInputStream(long offset, long length) throws IOException {
+            return get(GetObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .range("bytes=" + offset + "-" + (offset + length - 1))
+                    .build());
+        }
+
+        @Override
+        public String getFilename() {
+            return key.substring(key.lastIndexOf('/') + 1);
+        }
+
+        @Override
+        public String getDescription() {
+            return "S3 object [" + bucket + "/" + key + "]";
+        }
+
+        private InputStream get(GetObjectRequest request) throws IOException {
+            try {
+                return client.getObject(request);
+            } catch (S3Exception e) {
+                if (e.statusCode() == 404) {
+                    throw new FileNotFoundException(getDescription() + " does not exist");
+                }
+                throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+            } catch (SdkException e) {
+                throw new IOException("Could not read " + key + ": " + e.getMessage(), e);
+            }
+        }
+
+        private HeadObjectResponse head() throws IOException {
+            if (head == null) {
+                try {
+                    head = client.headObject(HeadObjectRequest.builder().bucket(bucket).key(key).build());
+                } catch (S3Exception e) {
+                    if (e.statusCode() == 404) {
+                        throw new FileNotFoundException(getDescription() + " does not exist");
+                    }
+                    throw new IOException("Could not stat " + key + ": " + e.getMessage(), e);
+                } catch (SdkException e) {
+                    throw new IOException("Could not stat " + key + ": " + e.getMessage(), e);
+                }
+            }
+            return head;
+        }
+    }
+}
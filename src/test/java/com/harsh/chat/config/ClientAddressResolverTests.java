@@ -0,0 +1,36 @@
+package com.harsh.chat.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ClientAddressResolverTests {
+
+	@Test
+	void ignoresForwardedForWithoutTrustedProxies() {
+		ClientAddressResolver resolver = resolver(0);
+
+		assertEquals("10.0.0.5", resolver.resolve(List.of("1.2.3.4"), "10.0.0.5"));
+	}
+
+	@Test
+	void takesTheEntryWrittenByTheOutermostTrustedProxy() {
+		ClientAddressResolver resolver = resolver(1);
+
+		// The client sent "6.6.6.6" itself; the load balancer appended the real peer
+		assertEquals("203.0.113.7", resolver.resolve(List.of("6.6.6.6, 203.0.113.7"), "10.0.0.5"));
+		assertEquals("203.0.113.7", resolver.resolve(List.of("6.6.6.6", "203.0.113.7"), "10.0.0.5"));
+		assertEquals("10.0.0.5", resolver.resolve(List.of(), "10.0.0.5"));
+
+		assertEquals("203.0.113.7", resolver(2).resolve(List.of("6.6.6.6, 203.0.113.7, 10.0.0.9"), "10.0.0.5"));
+	}
+
+	private ClientAddressResolver resolver(int hops) {
+		ClientAddressResolver resolver = new ClientAddressResolver();
+		ReflectionTestUtils.setField(resolver, "trustedProxyHops", hops);
+		return resolver;
+	}
+}
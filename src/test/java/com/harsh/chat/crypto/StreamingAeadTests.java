@@ -0,0 +1,107 @@
+package com.harsh.chat.crypto;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreamingAeadTests {
+
+	private static final int SEGMENT_SIZE = StreamingAead.MIN_SEGMENT_SIZE;
+
+	@Test
+	void roundTripsAtSegmentBoundaries() throws Exception {
+		SecretKey key = newKey();
+		for (int size : new int[]{0, 1, SEGMENT_SIZE - 1, SEGMENT_SIZE, SEGMENT_SIZE + 1, 3 * SEGMENT_SIZE}) {
+			byte[] plaintext = randomBytes(size);
+			byte[] stored = encrypt(plaintext, key);
+
+			StreamingAead.Header header = StreamingAead.Header.read(new ByteArrayInputStream(stored));
+			assertEquals(size, header.plaintextLength(stored.length));
+			assertArrayEquals(plaintext, decryptFrom(stored, key, 0));
+		}
+	}
+
+	@Test
+	void readsFromAnyOffsetWithoutEarlierSegments() throws Exception {
+		SecretKey key = newKey();
+		byte[] plaintext = randomBytes(5 * SEGMENT_SIZE + 123);
+		byte[] stored = encrypt(plaintext, key);
+
+		long position = 3L * SEGMENT_SIZE + 77;
+		byte[] tail = decryptFrom(stored, key, position);
+		assertArrayEquals(Arrays.copyOfRange(plaintext, (int) position, plaintext.length), tail);
+	}
+
+	@Test
+	void rejectsTruncationAndTampering() throws Exception {
+		SecretKey key = newKey();
+		byte[] stored = encrypt(randomBytes(3 * SEGMENT_SIZE), key);
+		StreamingAead.Header header = StreamingAead.Header.read(new ByteArrayInputStream(stored));
+
+		// Cut at a segment boundary: the new last segment was not sealed as last
+		byte[] truncated = Arrays.copyOf(stored, (int) header.segmentOffset(2));
+		assertThrows(IOException.class, () -> decryptFrom(truncated, key, 0));
+
+		byte[] tampered = stored.clone();
+		tampered[header.length() + 10] ^= 1;
+		assertThrows(IOException.class, () -> decryptFrom(tampered, key, 0));
+	}
+
+	@Test
+	void plaintextHasNoHeader() throws Exception {
+		assertNull(StreamingAead.Header.read(new ByteArrayInputStream("just a text file".getBytes())));
+	}
+
+	private byte[] encrypt(byte[] plaintext, SecretKey key) throws IOException {
+		ByteArrayOutputStream stored = new ByteArrayOutputStream();
+		StreamingAead.Header header = StreamingAead.Header.create(SEGMENT_SIZE, new byte[60]);
+		try (OutputStream out = new StreamingAead.EncryptingOutputStream(stored, key, header)) {
+			// Uneven writes, so segments are filled across calls
+			int offset = 0;
+			while (offset < plaintext.length) {
+				int n = Math.min(1000, plaintext.length - offset);
+				out.write(plaintext, offset, n);
+				offset += n;
+			}
+		}
+		return stored.toByteArray();
+	}
+
+	private byte[] decryptFrom(byte[] stored, SecretKey key, long position) throws IOException {
+		StreamingAead.Header header = StreamingAead.Header.read(new ByteArrayInputStream(stored));
+		long segment = position / header.segmentSize();
+		long offset = header.segmentOffset(segment);
+
+		InputStream source = new ByteArrayInputStream(stored, (int) offset, stored.length - (int) offset);
+		try (InputStream in = new StreamingAead.DecryptingInputStream(source, key, header,
+				segment, header.segmentCount(stored.length))) {
+			in.skipNBytes(position - segment * header.segmentSize());
+			return in.readAllBytes();
+		}
+	}
+
+	private byte[] randomBytes(int size) {
+		byte[] bytes = new byte[size];
+		ThreadLocalRandom.current().nextBytes(bytes);
+		return bytes;
+	}
+
+	private SecretKey newKey() throws Exception {
+		KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+		keyGen.init(256);
+		return keyGen.generateKey();
+	}
+}
@@ -0,0 +1,320 @@
+package com.harsh.chat.service;
+
+import com.harsh.chat.entity.UploadSession;
+import com.harsh.chat.entity.UploadSessionStatus;
+import com.harsh.chat.exception.UploadOffsetException;
+import com.harsh.chat.payload.InitiateUploadRequest;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ChunkedUploadServiceTests {
+
+	private static final String USER = "alice";
+
+	@TempDir
+	Path dir;
+
+	private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+	private FileStorageService fileStorageService;
+	private ChunkedUploadService service;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() {
+		MongoTemplate mongoTemplate = inMemorySessions();
+		fileStorageService = mock(FileStorageService.class);
+		when(fileStorageService.getTempDirectory()).thenReturn(dir);
+
+		service = new ChunkedUploadService(mongoTemplate, fileStorageService);
+		ReflectionTestUtils.setField(service, "maxFileSize", 1024L);
+		ReflectionTestUtils.setField(service, "maxPartSize", 64L);
+		ReflectionTestUtils.setField(service, "maxActiveSessions", 2L);
+		ReflectionTestUtils.setField(service, "sessionTtlMs", 60_000L);
+
+		content = new byte[100];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+	}
+
+	@Test
+	void resumesFromTheBytesThatReachedDisk() throws Exception {
+		UploadSession session = initiate();
+
+		// Connection drops after 30 of the part's 50 bytes
+		InputStream dropping = new DroppingInputStream(Arrays.copyOfRange(content, 0, 50), 30);
+		assertThrows(IOException.class, () -> service.writePart(session.getId(), USER, 0, 50, dropping));
+		assertEquals(30, sessions.get(session.getId()).getReceivedBytes());
+
+		// The client resumes from receivedBytes
+		service.writePart(session.getId(), USER, 30, 50, part(30, 80));
+		UploadSession resumed = service.writePart(session.getId(), USER, 80, 20, part(80, 100));
+
+		assertEquals(100, resumed.getReceivedBytes());
+		assertArrayEquals(content, Files.readAllBytes(Paths.get(session.getPartPath())));
+	}
+
+	@Test
+	void partPastTheReceivedBytesIsRejected() throws Exception {
+		UploadSession session = initiate();
+		service.writePart(session.getId(), USER, 0, 40, part(0, 40));
+
+		UploadOffsetException e = assertThrows(UploadOffsetException.class,
+				() -> service.writePart(session.getId(), USER, 60, 40, part(60, 100)));
+
+		assertEquals(40, e.getReceivedBytes());
+		assertEquals(40, sessions.get(session.getId()).getReceivedBytes());
+		assertEquals(40, Files.size(Paths.get(session.getPartPath())));
+	}
+
+	@Test
+	void duplicateAndOverlappingPartsOnlyWriteNewBytes() throws Exception {
+		UploadSession session = initiate();
+		service.writePart(session.getId(), USER, 0, 50, part(0, 50));
+
+		// A retry of an acknowledged part with different bytes changes nothing
+		UploadSession retried = service.writePart(session.getId(), USER, 0, 50, new ByteArrayInputStream(new byte[50]));
+		assertEquals(50, retried.getReceivedBytes());
+
+		// An overlapping part only contributes the bytes past receivedBytes
+		byte[] overlapping = part(40, 100).readAllBytes();
+		Arrays.fill(overlapping, 0, 10, (byte) -1);
+		UploadSession done = service.writePart(session.getId(), USER, 40, 60, new ByteArrayInputStream(overlapping));
+
+		assertEquals(100, done.getReceivedBytes());
+		assertArrayEquals(content, Files.readAllBytes(Paths.get(session.getPartPath())));
+	}
+
+	@Test
+	void activeSessionsAreCappedPerUser() throws Exception {
+		initiate();
+		initiate();
+
+		assertThrows(IllegalArgumentException.class, this::initiate);
+
+		assertEquals(2, sessions.size());
+		try (Stream<Path> partFiles = Files.list(dir)) {
+			assertEquals(2, partFiles.count());
+		}
+
+		// Other users have their own allowance
+		service.initiate(request(), "bob");
+		assertEquals(3, sessions.size());
+	}
+
+	@Test
+	void storageFailureBeforeTheMoveLetsTheClientRetry() throws Exception {
+		UploadSession session = uploaded();
+		when(fileStorageService.storeAssembledFile(any(), anyString(), any(), eq(USER), anyString()))
+				.thenThrow(new RuntimeException("store unavailable"));
+
+		assertThrows(RuntimeException.class, () -> service.complete(session.getId(), USER));
+
+		assertEquals(UploadSessionStatus.ACTIVE, sessions.get(session.getId()).getStatus());
+		assertTrue(Files.exists(Paths.get(session.getPartPath())));
+	}
+
+	@Test
+	void failureAfterThePartFileMovedDiscardsTheSession() throws Exception {
+		UploadSession session = uploaded();
+		when(fileStorageService.storeAssembledFile(any(), anyString(), any(), eq(USER), anyString()))
+				.thenAnswer(invocation -> {
+					Files.delete(invocation.getArgument(0));
+					throw new RuntimeException("attachment save failed");
+				});
+
+		assertThrows(RuntimeException.class, () -> service.complete(session.getId(), USER));
+
+		assertFalse(sessions.containsKey(session.getId()));
+	}
+
+	@Test
+	void garbageCollectionKeepsPartsOfLiveSessions() throws Exception {
+		UploadSession session = initiate();
+		service.writePart(session.getId(), USER, 0, 50, part(0, 50));
+		Path livePart = Paths.get(session.getPartPath());
+		Path orphan = Files.write(dir.resolve("orphan.part"), new byte[10]);
+
+		// The client has been retrying the next part for a while: no new bytes, session touched
+		FileTime longAgo = FileTime.from(Instant.now().minusSeconds(3600));
+		Files.setLastModifiedTime(livePart, longAgo);
+		Files.setLastModifiedTime(orphan, longAgo);
+
+		service.collectGarbage();
+
+		assertTrue(sessions.containsKey(session.getId()));
+		assertTrue(Files.exists(livePart));
+		assertFalse(Files.exists(orphan));
+	}
+
+	// ============== HELPERS ==============
+
+	private UploadSession initiate() {
+		return service.initiate(request(), USER);
+	}
+
+	private UploadSession uploaded() throws IOException {
+		UploadSession session = initiate();
+		service.writePart(session.getId(), USER, 0, 50, part(0, 50));
+		service.writePart(session.getId(), USER, 50, 50, part(50, 100));
+		return session;
+	}
+
+	private InitiateUploadRequest request() {
+		return InitiateUploadRequest.builder()
+				.fileName("clip.mp4")
+				.roomId("room")
+				.totalSize(content.length)
+				.build();
+	}
+
+	private InputStream part(int from, int to) {
+		return new ByteArrayInputStream(Arrays.copyOfRange(content, from, to));
+	}
+
+	/**
+	 * Just enough of MongoTemplate for upload sessions, keyed by _id
+	 */
+	private MongoTemplate inMemorySessions() {
+		MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+
+		when(mongoTemplate.insert(any(UploadSession.class))).thenAnswer(invocation -> {
+			UploadSession session = invocation.getArgument(0);
+			sessions.put(session.getId(), session);
+			return session;
+		});
+		when(mongoTemplate.findOne(any(Query.class), eq(UploadSession.class)))
+				.thenAnswer(invocation -> matching(invocation.getArgument(0)));
+		when(mongoTemplate.find(any(Query.class), eq(UploadSession.class))).thenAnswer(invocation -> {
+			Document updatedAt = ((Query) invocation.getArgument(0)).getQueryObject().get("updatedAt", Document.class);
+			return sessions.values().stream()
+					.filter(s -> updatedAt == null || s.getUpdatedAt().isBefore((LocalDateTime) updatedAt.get("$lt")))
+					.toList();
+		});
+		when(mongoTemplate.count(any(Query.class), eq(UploadSession.class))).thenAnswer(invocation -> {
+			Object uploadedBy = ((Query) invocation.getArgument(0)).getQueryObject().get("uploadedBy");
+			return sessions.values().stream().filter(s -> s.getUploadedBy().equals(uploadedBy)).count();
+		});
+		when(mongoTemplate.remove(any(Query.class), eq(UploadSession.class))).thenAnswer(invocation -> {
+			UploadSession session = matching(invocation.getArgument(0));
+			return DeleteResult.acknowledged(session != null && sessions.remove(session.getId()) != null ? 1 : 0);
+		});
+		when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+				eq(UploadSession.class))).thenAnswer(invocation -> {
+			UploadSession session = matching(invocation.getArgument(0));
+			if (session != null) {
+				apply(session, invocation.getArgument(1));
+			}
+			return session;
+		});
+		when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(UploadSession.class)))
+				.thenAnswer(invocation -> {
+					UploadSession session = matching(invocation.getArgument(0));
+					if (session != null) {
+						apply(session, invocation.getArgument(1));
+					}
+					return UpdateResult.acknowledged(session != null ? 1 : 0, session != null ? 1L : 0L, null);
+				});
+
+		return mongoTemplate;
+	}
+
+	private UploadSession matching(Query query) {
+		Document criteria = query.getQueryObject();
+		UploadSession session = sessions.get(criteria.getString("_id"));
+		if (session == null) {
+			return null;
+		}
+		if (criteria.containsKey("uploadedBy") && !criteria.get("uploadedBy").equals(session.getUploadedBy())) {
+			return null;
+		}
+		if (criteria.containsKey("status") && criteria.get("status") != session.getStatus()) {
+			return null;
+		}
+		return session;
+	}
+
+	private static void apply(UploadSession session, Update update) {
+		Document set = update.getUpdateObject().get("$set", Document.class);
+		if (set != null) {
+			if (set.containsKey("status")) {
+				session.setStatus((UploadSessionStatus) set.get("status"));
+			}
+			if (set.containsKey("updatedAt")) {
+				session.setUpdatedAt((LocalDateTime) set.get("updatedAt"));
+			}
+		}
+		Document max = update.getUpdateObject().get("$max", Document.class);
+		if (max != null && max.containsKey("receivedBytes")) {
+			session.setReceivedBytes(Math.max(session.getReceivedBytes(), ((Number) max.get("receivedBytes")).longValue()));
+		}
+	}
+
+	/**
+	 * Delivers the first bytes of a part, then fails like a dropped connection
+	 */
+	private static final class DroppingInputStream extends InputStream {
+
+		private final byte[] data;
+		private final int dropAfter;
+		private int position;
+
+		DroppingInputStream(byte[] data, int dropAfter) {
+			this.data = data;
+			this.dropAfter = dropAfter;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (position >= dropAfter) {
+				throw new IOException("Connection reset");
+			}
+			return data[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (position >= dropAfter) {
+				throw new IOException("Connection reset");
+			}
+			int count = Math.min(len, dropAfter - position);
+			System.arraycopy(data, position, b, off, count);
+			position += count;
+			return count;
+		}
+	}
+}
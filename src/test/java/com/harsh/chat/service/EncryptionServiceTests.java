@@ -0,0 +1,110 @@
+package com.harsh.chat.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EncryptionServiceTests {
+
+	private RoomKeyStore roomKeyStore;
+	private EncryptionService encryptionService;
+	private SecretKey version1;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		roomKeyStore = mock(RoomKeyStore.class);
+		encryptionService = new EncryptionService(roomKeyStore);
+		ReflectionTestUtils.setField(encryptionService, "encryptionEnabled", true);
+
+		version1 = newKey();
+		when(roomKeyStore.currentKey("room")).thenReturn(new RoomKeyStore.VersionedKey(1, version1));
+		when(roomKeyStore.key("room", 1)).thenReturn(version1);
+	}
+
+	@Test
+	void stringAndBinaryApisRoundTrip() {
+		String sealed = encryptionService.encryptMessage("héllo", "room");
+		assertEquals("héllo", encryptionService.decryptMessage(sealed, "room"));
+		assertNotEquals(sealed, encryptionService.encryptMessage("héllo", "room"));
+
+		byte[] plaintext = "binary".getBytes(StandardCharsets.UTF_8);
+		byte[] sealedBytes = encryptionService.encrypt(plaintext, "room");
+		assertEquals(EncryptionService.sealedLength(plaintext.length), sealedBytes.length);
+		assertArrayEquals(plaintext, encryptionService.decrypt(sealedBytes, "room"));
+
+		ByteBuffer sealedBuffer = ByteBuffer.allocate(EncryptionService.sealedLength(plaintext.length));
+		encryptionService.encrypt(ByteBuffer.wrap(plaintext), sealedBuffer, "room");
+		sealedBuffer.flip();
+		ByteBuffer opened = ByteBuffer.allocate(plaintext.length);
+		assertEquals(plaintext.length, encryptionService.decrypt(sealedBuffer, opened, "room"));
+		assertArrayEquals(plaintext, opened.array());
+	}
+
+	@Test
+	void messagesSealedBeforeRotationStillDecrypt() throws Exception {
+		String beforeRotation = encryptionService.encryptMessage("old", "room");
+
+		SecretKey version2 = newKey();
+		when(roomKeyStore.currentKey("room")).thenReturn(new RoomKeyStore.VersionedKey(2, version2));
+		when(roomKeyStore.key("room", 2)).thenReturn(version2);
+
+		String afterRotation = encryptionService.encryptMessage("new", "room");
+		assertEquals("old", encryptionService.decryptMessage(beforeRotation, "room"));
+		assertEquals("new", encryptionService.decryptMessage(afterRotation, "room"));
+	}
+
+	@Test
+	void tamperedCiphertextIsRejected() {
+		byte[] sealed = encryptionService.encrypt("secret".getBytes(StandardCharsets.UTF_8), "room");
+		sealed[sealed.length - 1] ^= 1;
+		assertThrows(RuntimeException.class, () -> encryptionService.decrypt(sealed, "room"));
+	}
+
+	@Test
+	void batchDecryptIsolatesFailuresAndLooksUpEachKeyOnce() {
+		ReflectionTestUtils.setField(encryptionService, "parallelThreshold", 2);
+		encryptionService.init();
+		try {
+			byte[] tampered = encryptionService.encrypt("bad".getBytes(StandardCharsets.UTF_8), "room");
+			tampered[tampered.length - 1] ^= 1;
+
+			List<EncryptionService.DecryptResult> results = encryptionService.decryptBatch(List.of(
+					encryptionService.encryptMessage("one", "room"),
+					Base64.getEncoder().encodeToString(tampered),
+					"not base64!",
+					encryptionService.encryptMessage("two", "room")), "room");
+
+			assertEquals("one", results.get(0).plaintext());
+			assertFalse(results.get(1).ok());
+			assertFalse(results.get(2).ok());
+			assertEquals("two", results.get(3).plaintext());
+			// Encrypting goes through currentKey, so this is the batch's one lookup for version 1
+			verify(roomKeyStore, times(1)).key("room", 1);
+		} finally {
+			encryptionService.shutdown();
+		}
+	}
+
+	private SecretKey newKey() throws Exception {
+		KeyGenerator keyGen = KeyGenerator.getInstance("AES");
+		keyGen.init(256);
+		return keyGen.generateKey();
+	}
+}
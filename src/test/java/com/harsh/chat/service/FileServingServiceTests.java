@@ -0,0 +1,119 @@
+package com.harsh.chat.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FileServingServiceTests {
+
+	private static final String ETAG = "\"abc123\"";
+	private static final CacheControl CACHE_CONTROL = CacheControl.maxAge(Duration.ofDays(365)).cachePublic();
+
+	@TempDir
+	Path dir;
+
+	private FileServingService service;
+	private FileStorageService.ServedFile served;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		service = new FileServingService(new SimpleMeterRegistry());
+		service.init();
+
+		content = new byte[1000];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+		Path file = Files.write(dir.resolve("clip.bin"), content);
+		served = new FileStorageService.ServedFile(new FileSystemResource(file), ETAG, true);
+	}
+
+	@Test
+	void notModifiedKeepsCachingHeaders() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.IF_NONE_MATCH, ETAG);
+
+		MockHttpServletResponse response = serve(request);
+
+		assertEquals(304, response.getStatus());
+		assertEquals(CACHE_CONTROL.getHeaderValue(), response.getHeader(HttpHeaders.CACHE_CONTROL));
+		assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void singleRangeIsPartialContent() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertEquals(206, response.getStatus());
+		assertEquals("bytes 100-199/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(Arrays.copyOfRange(content, 100, 200), response.getContentAsByteArray());
+	}
+
+	@Test
+	void multipleRangesGetTheFullBody() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=0-9,500-509");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertEquals(200, response.getStatus());
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void rangeStartingPastTheEndIsNotSatisfiable() throws Exception {
+		MockHttpServletRequest request = request();
+		request.addHeader(HttpHeaders.RANGE, "bytes=1000-");
+
+		MockHttpServletResponse response = serve(request);
+
+		assertEquals(416, response.getStatus());
+		assertEquals("bytes */1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+	}
+
+	@Test
+	void ifRangeWithStaleValidatorGetsTheFullBody() throws Exception {
+		MockHttpServletRequest stale = request();
+		stale.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+		stale.addHeader(HttpHeaders.IF_RANGE, "\"old\"");
+
+		MockHttpServletResponse full = serve(stale);
+		assertEquals(200, full.getStatus());
+		assertArrayEquals(content, full.getContentAsByteArray());
+
+		MockHttpServletRequest current = request();
+		current.addHeader(HttpHeaders.RANGE, "bytes=100-199");
+		current.addHeader(HttpHeaders.IF_RANGE, ETAG);
+
+		assertEquals(206, serve(current).getStatus());
+	}
+
+	private MockHttpServletRequest request() {
+		return new MockHttpServletRequest("GET", "/api/v1/files/clip.bin");
+	}
+
+	private MockHttpServletResponse serve(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		service.serve(served, "application/octet-stream", "inline", CACHE_CONTROL, request, response);
+		return response;
+	}
+}
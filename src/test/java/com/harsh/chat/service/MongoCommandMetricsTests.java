@@ -0,0 +1,28 @@
+package com.harsh.chat.service;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MongoCommandMetricsTests {
+
+	@Test
+	void shapeRedactsValuesButKeepsStructureAndSort() {
+		BsonDocument find = BsonDocument.parse("""
+				{find: "messages", filter: {roomId: "secret-room", timestamp: {$lt: 1700000000}},
+				 sort: {timestamp: -1}, limit: 20, $db: "chatdb", lsid: {id: 1}}""");
+
+		assertEquals("{find: messages, filter: {roomId: ?, timestamp: {$lt: ?}}, sort: {\"timestamp\": -1}, limit: ?}",
+				MongoCommandMetrics.shape(find));
+	}
+
+	@Test
+	void shapeSummarizesArrays() {
+		BsonDocument insert = BsonDocument.parse("""
+				{insert: "messages", ordered: true, documents: [{content: "a"}, {content: "b"}, {content: "c"}]}""");
+
+		assertEquals("{insert: messages, ordered: ?, documents: [{content: ?}, ...2 more]}",
+				MongoCommandMetrics.shape(insert));
+	}
+}
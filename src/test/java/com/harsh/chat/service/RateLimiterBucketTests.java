@@ -0,0 +1,59 @@
+package com.harsh.chat.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterBucketTests {
+
+	@Test
+	void allowsBurstUpToLimitThenRefillsGradually() {
+		RateLimiterService.Bucket bucket = new RateLimiterService.Bucket(10, 60);
+		long now = System.nanoTime();
+
+		for (int i = 0; i < 10; i++) {
+			assertTrue(bucket.tryAcquire(now));
+		}
+		assertFalse(bucket.tryAcquire(now));
+
+		// One unit every 6 seconds
+		assertFalse(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(5)));
+		assertTrue(bucket.tryAcquire(now + TimeUnit.SECONDS.toNanos(6)));
+	}
+
+	@Test
+	void clusterDebtShrinksLocalBudget() {
+		RateLimiterService.Bucket bucket = new RateLimiterService.Bucket(10, 60);
+		long now = System.nanoTime();
+
+		// Other nodes already used 9 of the 10 units
+		bucket.applyClusterDebt(now, TimeUnit.SECONDS.toNanos(54));
+
+		assertTrue(bucket.tryAcquire(now));
+		assertFalse(bucket.tryAcquire(now));
+	}
+
+	@Test
+	void failedSyncKeepsDrainedUnitsForTheNextOne() {
+		RateLimiterService.Bucket bucket = new RateLimiterService.Bucket(10, 60);
+		long now = System.nanoTime();
+
+		for (int i = 0; i < 3; i++) {
+			assertTrue(bucket.tryAcquire(now));
+		}
+		long units = bucket.drainPending();
+		assertEquals(3, units);
+
+		bucket.requeue(units, now);
+		assertTrue(bucket.tryAcquire(now));
+		assertEquals(4, bucket.drainPending());
+
+		// Fully refilled by now: the late units no longer matter
+		bucket.requeue(4, now + TimeUnit.SECONDS.toNanos(60));
+		assertEquals(0, bucket.drainPending());
+	}
+}
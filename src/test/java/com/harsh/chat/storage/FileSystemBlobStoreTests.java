@@ -0,0 +1,44 @@
+package com.harsh.chat.storage;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileSystemBlobStoreTests {
+
+	@TempDir
+	Path root;
+
+	@Test
+	void putMovesFileUnderKeyAndDeleteRemovesIt() throws Exception {
+		FileSystemBlobStore store = new FileSystemBlobStore();
+		ReflectionTestUtils.setField(store, "uploadDir", root.toString());
+		store.init();
+
+		Path source = Files.write(root.resolve("upload.tmp"), new byte[]{1, 2, 3});
+		store.put("images/abc.png", source, "image/png");
+
+		assertFalse(Files.exists(source));
+		assertArrayEquals(new byte[]{1, 2, 3}, store.getResource("images/abc.png").getContentAsByteArray());
+		assertTrue(store.presignedUrl("images/abc.png", "inline", "no-cache").isEmpty());
+
+		store.delete("images/abc.png");
+		assertFalse(store.getResource("images/abc.png").exists());
+		assertThrows(IllegalArgumentException.class, () -> store.getResource("../outside.txt"));
+	}
+
+	@Test
+	void keyOfAcceptsKeysAndLegacyAbsolutePaths() {
+		assertEquals("images/abc.png", BlobStore.keyOf("images/abc.png"));
+		assertEquals("thumbnails/thumb_abc.jpg", BlobStore.keyOf("/tmp/uploads/thumbnails/thumb_abc.jpg"));
+	}
+}
@@ -0,0 +1,149 @@
+package com.harsh.chat.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.core.io.Resource;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.http.AbortableInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Instant;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the store configured as for a local MinIO (endpoint override, static keys, path-style
+ * access) with the S3 client stubbed, so no bucket is needed. Presigning is computed locally.
+ */
+class S3BlobStoreTests {
+
+	private static final String KEY = "images/abc.png";
+
+	private S3Client client;
+	private S3BlobStore store;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() {
+		store = new S3BlobStore();
+		ReflectionTestUtils.setField(store, "endpoint", "http://localhost:9000");
+		ReflectionTestUtils.setField(store, "region", "us-east-1");
+		ReflectionTestUtils.setField(store, "bucket", "chat");
+		ReflectionTestUtils.setField(store, "accessKey", "minio");
+		ReflectionTestUtils.setField(store, "secretKey", "minio-secret");
+		ReflectionTestUtils.setField(store, "pathStyle", true);
+		ReflectionTestUtils.setField(store, "presignDownloads", true);
+		ReflectionTestUtils.setField(store, "presignTtlSeconds", 900L);
+		store.init();
+
+		client = mock(S3Client.class);
+		ReflectionTestUtils.setField(store, "client", client);
+
+		content = new byte[100];
+		for (int i = 0; i < content.length; i++) {
+			content[i] = (byte) i;
+		}
+	}
+
+	@Test
+	void notFoundMeansMissing() {
+		when(client.headObject(any(HeadObjectRequest.class))).thenThrow(s3Error(404));
+		when(client.getObject(any(GetObjectRequest.class))).thenThrow(s3Error(404));
+
+		Resource resource = store.getResource(KEY);
+
+		assertFalse(resource.exists());
+		assertThrows(FileNotFoundException.class, resource::contentLength);
+		assertThrows(FileNotFoundException.class, resource::getInputStream);
+	}
+
+	@Test
+	void otherFailuresAreNotReportedAsMissingFiles() {
+		when(client.headObject(any(HeadObjectRequest.class))).thenThrow(s3Error(503));
+
+		Resource resource = store.getResource(KEY);
+
+		assertFalse(resource.exists());
+		IOException e = assertThrows(IOException.class, resource::contentLength);
+		assertFalse(e instanceof FileNotFoundException);
+	}
+
+	@Test
+	void metadataComesFromOneHead() throws Exception {
+		Instant modified = Instant.parse("2026-01-01T00:00:00Z");
+		when(client.headObject(any(HeadObjectRequest.class))).thenReturn(HeadObjectResponse.builder()
+				.contentLength(100L)
+				.lastModified(modified)
+				.build());
+
+		Resource resource = store.getResource(KEY);
+
+		assertTrue(resource.exists());
+		assertEquals(100, resource.contentLength());
+		assertEquals(modified.toEpochMilli(), resource.lastModified());
+		verify(client).headObject(any(HeadObjectRequest.class));
+	}
+
+	@Test
+	void rangedReadAsksForOnlyThoseBytes() throws Exception {
+		when(client.getObject(any(GetObjectRequest.class))).thenReturn(object(Arrays.copyOfRange(content, 10, 20)));
+
+		BlobStore.RangeReadable resource = (BlobStore.RangeReadable) store.getResource(KEY);
+		try (InputStream in = resource.getInputStream(10, 10)) {
+			assertArrayEquals(Arrays.copyOfRange(content, 10, 20), in.readAllBytes());
+		}
+
+		ArgumentCaptor<GetObjectRequest> request = ArgumentCaptor.forClass(GetObjectRequest.class);
+		verify(client).getObject(request.capture());
+		assertEquals("chat", request.getValue().bucket());
+		assertEquals(KEY, request.getValue().key());
+		assertEquals("bytes=10-19", request.getValue().range());
+	}
+
+	@Test
+	void presignedUrlTargetsTheBucketPathWithResponseHeaders() {
+		URI url = store.presignedUrl(KEY, "inline; filename=\"abc.png\"", "public, max-age=31536000, immutable")
+				.orElseThrow();
+
+		assertEquals("localhost", url.getHost());
+		assertEquals(9000, url.getPort());
+		assertEquals("/chat/" + KEY, url.getPath());
+		assertTrue(url.getQuery().contains("X-Amz-Expires=900"));
+		assertTrue(url.getQuery().contains("X-Amz-Signature="));
+		assertTrue(url.getQuery().contains("response-content-disposition="));
+		assertTrue(url.getQuery().contains("response-cache-control="));
+
+		ReflectionTestUtils.setField(store, "presignDownloads", false);
+		assertTrue(store.presignedUrl(KEY, "inline", "no-cache").isEmpty());
+	}
+
+	private static S3Exception s3Error(int status) {
+		return (S3Exception) S3Exception.builder().statusCode(status).message("HTTP " + status).build();
+	}
+
+	private static ResponseInputStream<GetObjectResponse> object(byte[] bytes) {
+		return new ResponseInputStream<>(GetObjectResponse.builder().contentLength((long) bytes.length).build(),
+				AbortableInputStream.create(new ByteArrayInputStream(bytes)));
+	}
+}